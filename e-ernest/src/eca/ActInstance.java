@@ -23,9 +23,15 @@ public interface ActInstance extends Placeable
 	public Primitive getPrimitive();
 	
 	/**
+	 * @param primitive The primitive interaction of this Act Instance.
+	 */
+	public void setPrimitive(Primitive primitive);
+	
+	/**
+	 * @param memory The memory of the agent that constructs the act.
 	 * @return The act constructed from this act instance.
 	 */
-	public Act getAct(); 
+	public Act getAct(AgentMemory memory); 
 	
 	/**
 	 * Normalize this act instance.
@@ -1,7 +1,6 @@
 package eca;
 
 
-import javax.media.j3d.Transform3D;
 import javax.vecmath.Point3f;
 import javax.vecmath.Vector3f;
 import eca.construct.egomem.Area;
@@ -9,6 +8,7 @@ import eca.construct.egomem.AreaImpl;
 import eca.construct.egomem.Aspect;
 import eca.spas.Place;
 import eca.spas.PlaceImpl;
+import eca.spas.Transform2D;
 import eca.ss.enaction.Act;
 import eca.ss.enaction.ActImpl;
 import tracing.ITracer;
@@ -21,6 +21,7 @@ public class ActInstanceImpl implements ActInstance
 {
 	private Primitive primitive;
 	private Place place;
+	/** The clock, in addition to the ticks of spatial memory */
 	private int clock = 0;
 	private Aspect aspect = Aspect.MOVE;
 	private int modality;
@@ -35,16 +36,21 @@ public class ActInstanceImpl implements ActInstance
 	public ActInstanceImpl(Primitive primitive, Point3f position){
 		this.primitive = primitive;
 		this.place = new PlaceImpl(position);
+		this.place.setFading(true);
 	}
 	
-	public Act getAct() {
-		return ActImpl.createOrGetPrimitiveAct(primitive, this.place.getArea());
+	public Act getAct(AgentMemory memory) {
+		return ActImpl.createOrGetPrimitiveAct(memory, primitive, this.place.getArea());
 	}
 
 	public Primitive getPrimitive() {
 		return this.primitive;
 	}
 
+	public void setPrimitive(Primitive primitive) {
+		this.primitive = primitive;
+	}
+
 	public Point3f getPosition() {
 		return this.place.getPosition();
 	}
@@ -69,7 +75,7 @@ public class ActInstanceImpl implements ActInstance
 		return clonePlace;
 	}
 	
-	public void transform(Transform3D transform)
+	public void transform(Transform2D transform)
 	{
 		this.place.transform(transform);
 	}		
@@ -88,7 +94,7 @@ public class ActInstanceImpl implements ActInstance
 	}
 
 	public int getClock(){
-		return this.clock;
+		return this.clock + this.place.getNbTicks();
 	}
 
 	public float getOrientationAngle(){
@@ -131,7 +137,7 @@ public class ActInstanceImpl implements ActInstance
 			ret  = (this.getDisplayLabel().equals(other.getDisplayLabel()) 
 					//&& this.position.epsilonEquals(other.getPosition(), .1f)
 					&& this.place.equals(other.getPlace())
-					&& (this.clock == other.getClock()));
+					&& (this.getClock() == other.getClock()));
 			//ret = isInCell(other.getPosition()) && other.getClock() == getClock() && other.getType() == getType();
 		}		
 		return ret;
@@ -157,7 +163,8 @@ public class ActInstanceImpl implements ActInstance
 		
 		Object p = tracer.addSubelement(e, "place");		
 		tracer.addSubelement(p, "primitive", this.primitive.getLabel());
-		tracer.addSubelement(p, "position", "(" + this.getPosition().x + "," + this.getPosition().y + ")");
+		if (tracer.accepts("position"))
+			tracer.addSubelement(p, "position", "(" + this.getPosition().x + "," + this.getPosition().y + ")");
 		tracer.addSubelement(p, "area", AreaImpl.createOrGet(this.getPosition()).getLabel());
 		tracer.addSubelement(p, "modality", this.modality + "");
 		tracer.addSubelement(p, "aspect", this.aspect.toString());
@@ -0,0 +1,157 @@
+package eca;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import utils.LongIntMap;
+import eca.construct.Action;
+import eca.construct.Appearance;
+import eca.construct.Displacement;
+import eca.construct.egomem.PhenomenonType;
+import eca.construct.egomem.PhenomenonTypeImpl;
+import eca.construct.experiment.Experiment;
+import eca.ss.enaction.Act;
+
+/**
+ * The memory of one Ernest agent.
+ * Holds everything the agent learns (primitive interactions, acts, actions, appearances, experiments,
+ * phenomenon types and displacements) so that several agents can run in the same JVM without sharing memory.
+ * The memory is created by the agent and passed to its sequential, spatial and decisional systems.
+ * The factory methods of each construct (e.g. ActImpl.createOrGetCompositeAct) take the memory in which to create or get the construct.
+ * A memory is not thread-safe: it must only be used by the thread that steps its agent.
+ * @author Olivier
+ */
+public class AgentMemory
+{
+	/** The primitive interactions indexed by their label */
+	private Map<String , Primitive> primitives = new HashMap<String , Primitive>();
+
+	/** All the acts, indexed by their id */
+	private List<Act> acts = new ArrayList<Act>();
+	/** The primitive acts indexed by the label of their primitive interaction and area */
+	private Map<String , Act> primitiveActs = new LinkedHashMap<String , Act>();
+	/** The ids of the composite acts indexed by the ids of their pre-act and post-act */
+	private LongIntMap compositeActIndex = new LongIntMap();
+
+	/** The actions indexed by their label */
+	private Map<String , Action> actions = new LinkedHashMap<String , Action>();
+	/** The actions that contain each act, in the order of the actions */
+	private Map<Act , List<Action>> actActions = new HashMap<Act , List<Action>>();
+	/** The composite acts indexed by their pre-act and by the action of their post-act */
+	private Map<Act , Map<Action , List<Act>>> sequences = new HashMap<Act , Map<Action , List<Act>>>();
+	/** The index used to order new actions */
+	private int actionIndex = 0;
+	/** The appearances indexed by their label */
+	private Map<String , Appearance> appearances = new HashMap<String , Appearance>();
+	/** The experiments indexed by their label */
+	private Map<String , Experiment> experiments = new HashMap<String , Experiment>();
+	/** The displacements indexed by their label */
+	private Map<String , Displacement> displacements = new HashMap<String , Displacement>();
+
+	/** The phenomenon types indexed by their label */
+	private Map<String , PhenomenonType> phenomenonTypes = new HashMap<String , PhenomenonType>();
+	/** The index used to label new phenomenon types */
+	private int phenomenonTypeIndex = 0;
+
+	/**
+	 * Create an empty memory.
+	 * The memory initially contains the empty phenomenon type.
+	 */
+	public AgentMemory()
+	{
+		PhenomenonTypeImpl.createOrGet(this, PhenomenonType.EMPTY.getLabel());
+	}
+
+	/**
+	 * @return The primitive interactions indexed by their label.
+	 */
+	public Map<String, Primitive> getPrimitives() {
+		return primitives;
+	}
+
+	/**
+	 * @return The list of all acts, indexed by their id.
+	 */
+	public List<Act> getActs() {
+		return acts;
+	}
+
+	/**
+	 * @return The primitive acts indexed by the label of their primitive interaction and area.
+	 */
+	public Map<String, Act> getPrimitiveActs() {
+		return primitiveActs;
+	}
+
+	/**
+	 * @return The ids of the composite acts indexed by the ids of their pre-act and post-act.
+	 */
+	public LongIntMap getCompositeActIndex() {
+		return compositeActIndex;
+	}
+
+	/**
+	 * @return The actions indexed by their label.
+	 */
+	public Map<String, Action> getActions() {
+		return actions;
+	}
+
+	/**
+	 * @return The actions that contain each act, in the order of the actions.
+	 */
+	public Map<Act, List<Action>> getActActions() {
+		return actActions;
+	}
+
+	/**
+	 * @return The composite acts indexed by their pre-act and by the action of their post-act.
+	 */
+	public Map<Act, Map<Action, List<Act>>> getSequences() {
+		return sequences;
+	}
+
+	/**
+	 * @return The next index used to order a new action.
+	 */
+	public int nextActionIndex() {
+		return ++actionIndex;
+	}
+
+	/**
+	 * @return The appearances indexed by their label.
+	 */
+	public Map<String, Appearance> getAppearances() {
+		return appearances;
+	}
+
+	/**
+	 * @return The experiments indexed by their label.
+	 */
+	public Map<String, Experiment> getExperiments() {
+		return experiments;
+	}
+
+	/**
+	 * @return The displacements indexed by their label.
+	 */
+	public Map<String, Displacement> getDisplacements() {
+		return displacements;
+	}
+
+	/**
+	 * @return The phenomenon types indexed by their label.
+	 */
+	public Map<String, PhenomenonType> getPhenomenonTypes() {
+		return phenomenonTypes;
+	}
+
+	/**
+	 * @return The next index used to label a new phenomenon type.
+	 */
+	public int nextPhenomenonTypeIndex() {
+		return ++phenomenonTypeIndex;
+	}
+}
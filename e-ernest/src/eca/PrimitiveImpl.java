@@ -14,8 +14,6 @@ import eca.construct.DisplacementImpl;
  */
 public class PrimitiveImpl implements Primitive {
 
-	private static Map<String , Primitive> INTERACTIONS = new HashMap<String , Primitive>() ;
-
 	private String label = "";
 	private int value = 0;
 	
@@ -25,42 +23,56 @@ public class PrimitiveImpl implements Primitive {
 	//private Map<Displacement , Integer> displacements = new HashMap<Displacement , Integer>() ;
 
 	/**
+	 * @param memory The agent's memory
 	 * @param label The primitive interaction's label
 	 * @param value The primitive interaction's value
 	 * @return The primitive interaction created or retrieved
 	 */
-	public static Primitive createOrGet(String label, int value){
-		if (!INTERACTIONS.containsKey(label))
-			INTERACTIONS.put(label, new PrimitiveImpl(label, value));			
-		return INTERACTIONS.get(label);
+	public static Primitive createOrGet(AgentMemory memory, String label, int value){
+		Map<String , Primitive> interactions = memory.getPrimitives();
+		if (!interactions.containsKey(label))
+			interactions.put(label, new PrimitiveImpl(label, value));			
+		return interactions.get(label);
+	}
+	
+	/**
+	 * Create a primitive interaction that is not recorded in any agent's memory.
+	 * Used by environments to report the enacted interaction to the agent.
+	 * @param label The primitive interaction's label
+	 * @param value The primitive interaction's value
+	 * @return The primitive interaction
+	 */
+	public static Primitive create(String label, int value){
+		return new PrimitiveImpl(label, value);
 	}
 	
 	/**
+	 * @param memory The agent's memory
 	 * @param preInteraction The composite interaction's pre-interaction
 	 * @param postInteraction The composite interaction's post-interaction
 	 * @return The primitive interaction created or retrieved
 	 */
-	public static Primitive createOrGetComposite(Primitive preInteraction, Primitive postInteraction){
+	public static Primitive createOrGetComposite(AgentMemory memory, Primitive preInteraction, Primitive postInteraction){
 		String label = "(" + preInteraction.getLabel() + postInteraction.getLabel() + ")";
 		int value = preInteraction.getValue() + postInteraction.getValue();
-		if (!INTERACTIONS.containsKey(label))
-			INTERACTIONS.put(label, new PrimitiveImpl(label, value));			
-		return INTERACTIONS.get(label);
+		return createOrGet(memory, label, value);
 	}
 	
 	/**
+	 * @param memory The agent's memory
 	 * @param label The primitive interaction's label
 	 * @return The primitive interaction
 	 */
-	public static Primitive get(String label){
-		return INTERACTIONS.get(label);
+	public static Primitive get(AgentMemory memory, String label){
+		return memory.getPrimitives().get(label);
 	}
 	
 	/**
+	 * @param memory The agent's memory
 	 * @return The collection of all primitive interactions
 	 */
-	public static Collection<Primitive> getINTERACTIONS() {
-		return INTERACTIONS.values();
+	public static Collection<Primitive> getINTERACTIONS(AgentMemory memory) {
+		return memory.getPrimitives().values();
 	}
 	
 	private PrimitiveImpl(String label, int value){
@@ -40,6 +40,11 @@ public interface Action
 	 */
 	public boolean contains(Act act);
 
+	/**
+	 * @return A number that changes each time acts are added to this action.
+	 */
+	public int getVersion();
+
 	/**
 	 * Predicts the act that will likely result from performing this action on this appearance based on previous experiments
 	 * if no previous experiment then return the act made of the first primitive of this action in area O.
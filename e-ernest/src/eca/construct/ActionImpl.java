@@ -2,11 +2,16 @@ package eca.construct;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedHashMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import tracing.ITracer;
+import eca.AgentMemory;
 import eca.ss.enaction.Act;
+import eca.ss.enaction.ActImpl;
 
 /**
  * An Action that can be performed in the external world.
@@ -24,22 +29,27 @@ public class ActionImpl implements Action {
 	/** Action Swap */
 	public static String ACTION_SWAP = "s";
 
-	private static Map<String , Action> ACTIONS = new LinkedHashMap<String , Action>() ;
 	//private static int index = 0;
 
+	private AgentMemory memory;
+	private int index;
 	private String label;
 	private List<Act> acts = new ArrayList<Act>();
+	private Set<Act> actSet = new HashSet<Act>();
+	private int version = 0;
 
 	/**
 	 * Create or get an action from its act.
+	 * @param memory The agent's memory
 	 * @param act The action's act
 	 * @return The created or retrieved action.
 	 */
-	public static Action createOrGet(Act act){
+	public static Action createOrGet(AgentMemory memory, Act act){
+		Map<String , Action> actions = memory.getActions();
 		String key = createKey(act);
-		if (!ACTIONS.containsKey(key))
-			ACTIONS.put(key, new ActionImpl(key));			
-		return ACTIONS.get(key);
+		if (!actions.containsKey(key))
+			actions.put(key, new ActionImpl(memory, key));			
+		return actions.get(key);
 	}
 	
 	private static String createKey(Act act) {
@@ -56,41 +66,119 @@ public class ActionImpl implements Action {
 	}
 
 	/**
+	 * @param memory The agent's memory
 	 * @param act The act whose action we are searching for
 	 * @return The first action found that contains act. Null if no action found.
 	 */
-	public static Action getAction(Act act){
-		for (Action action : ActionImpl.getACTIONS())
-			if (action.contains(act))
-				return action;
-		return null;
+	public static Action getAction(AgentMemory memory, Act act){
+		List<Action> actions = memory.getActActions().get(act);
+		if (actions == null)
+			return null;
+		return actions.get(0);
 	}
 	
 	/**
+	 * The index used to check the reliability of sequences.
+	 * @param memory The agent's memory
+	 * @param preAct The pre-act
+	 * @param action The action
+	 * @return The composite acts whose pre-act is preAct and whose post-act belongs to action, in order of creation.
+	 * Their post-acts are distinct.
+	 */
+	public static List<Act> getSequences(AgentMemory memory, Act preAct, Action action){
+		Map<Action, List<Act>> sequences = memory.getSequences().get(preAct);
+		if (sequences == null || action == null)
+			return Collections.emptyList();
+		List<Act> compositeActs = sequences.get(action);
+		if (compositeActs == null)
+			return Collections.emptyList();
+		return compositeActs;
+	}
+	
+	/**
+	 * Index a new composite act by its pre-act and by the action of its post-act.
+	 * @param memory The agent's memory
+	 * @param compositeAct The composite act
+	 */
+	public static void addSequence(AgentMemory memory, Act compositeAct){
+		Action action = getAction(memory, compositeAct.getPostAct());
+		if (action != null)
+			indexSequence(memory, compositeAct, action);
+	}
+	
+	private static void indexSequence(AgentMemory memory, Act compositeAct, Action action){
+		Map<Action, List<Act>> sequences = memory.getSequences().get(compositeAct.getPreAct());
+		if (sequences == null){
+			sequences = new HashMap<Action, List<Act>>();
+			memory.getSequences().put(compositeAct.getPreAct(), sequences);
+		}
+		List<Act> compositeActs = sequences.get(action);
+		if (compositeActs == null){
+			compositeActs = new ArrayList<Act>(2);
+			sequences.put(action, compositeActs);
+		}
+		int i = compositeActs.size();
+		while (i > 0 && compositeActs.get(i - 1).getId() > compositeAct.getId())
+			i--;
+		compositeActs.add(i, compositeAct);
+	}
+	
+	/**
+	 * Move the composite acts whose post-act is act when the action of act changes.
+	 */
+	private static void moveSequences(AgentMemory memory, Act act, Action previousAction, Action action){
+		for (Act compositeAct : ActImpl.getPostCompositeActs(memory, act)){
+			if (previousAction != null){
+				Map<Action, List<Act>> sequences = memory.getSequences().get(compositeAct.getPreAct());
+				List<Act> compositeActs = sequences.get(previousAction);
+				compositeActs.remove(compositeAct);
+				if (compositeActs.isEmpty())
+					sequences.remove(previousAction);
+			}
+			if (action != null)
+				indexSequence(memory, compositeAct, action);
+		}
+	}
+	
+	/**
+	 * @param memory The agent's memory
+	 * @param act The act
+	 * @return The actions that contain act, in order of creation.
+	 */
+	public static List<Action> getActions(AgentMemory memory, Act act){
+		List<Action> actions = memory.getActActions().get(act);
+		if (actions == null)
+			return Collections.emptyList();
+		return actions;
+	}
+	
+	/**
+	 * @param memory The agent's memory
 	 * @return The collection of all actions known by the agent.
 	 */
-	public static Collection<Action> getACTIONS(){
-		return ACTIONS.values();
+	public static Collection<Action> getACTIONS(AgentMemory memory){
+		return memory.getActions().values();
 	}
 	
 	/**
 	 * Merge the action of the enacted act into the intended action.
 	 * The interactions attached to the enacted act's action are transferred to the intendedAction and the enacted Action is removed
+	 * @param memory The agent's memory
 	 * @param act The act to merge. 
 	 * @param intendedAction The second action to which to merge (kept).
 	 */
-	public static void merge(Act act, Action intendedAction){
+	public static void merge(AgentMemory memory, Act act, Action intendedAction){
 		if (!intendedAction.contains(act)){
+			// The last action that contains act
 			Action action = null;
-			for (Action a : getACTIONS()){
-				if (a.contains(act))
-					action = a;
-			}
+			List<Action> actions = memory.getActActions().get(act);
+			if (actions != null)
+				action = actions.get(actions.size() - 1);
 			// TODO more complex merge of actions.
 			if (action != null){
 				for (Act p : action.getActs())
 					intendedAction.addAct(p);
-				ACTIONS.remove(action.getLabel());
+				remove(memory, action);
 			}
 			intendedAction.addAct(act);
 		}
@@ -98,16 +186,26 @@ public class ActionImpl implements Action {
 	
 	/**
 	 * The intendedAction absorbs the other action that contains the same acts.
+	 * @param memory The agent's memory
 	 * @param intendedAction The intended action
 	 * @param tracer The tracer
 	 */
-	public static void absorbIdenticalAction(Action intendedAction, ITracer tracer){
-		Action action = null;
-		for (Action a : getACTIONS()){
-			if (a!=intendedAction)	
-				//if (a.getActs().containsAll(intendedAction.getActs()))
-				if (intendedAction.getActs().containsAll(a.getActs()))
-					action = a;				
+	public static void absorbIdenticalAction(AgentMemory memory, Action intendedAction, ITracer tracer){
+		// The last action whose acts all belong to the intendedAction:
+		// count the acts of the intendedAction that each other action contains.
+		ActionImpl action = null;
+		Map<Action, Integer> counts = new HashMap<Action, Integer>();
+		for (Act p : intendedAction.getActs()){
+			for (Action a : memory.getActActions().get(p)){
+				if (a!=intendedAction){
+					Integer count = counts.get(a);
+					count = (count == null ? 1 : count + 1);
+					counts.put(a, count);
+					if (count == a.getActs().size())
+						if (action == null || action.index < ((ActionImpl)a).index)
+							action = (ActionImpl)a;
+				}
+			}
 		}
 		if (action != null){
 			for (Act p : action.getActs())
@@ -115,11 +213,31 @@ public class ActionImpl implements Action {
 			if (tracer != null){
 				tracer.addEventElement("merge_action", intendedAction.getLabel());
 			}
-			ACTIONS.remove(action.getLabel());
+			remove(memory, action);
 		}		
 	}
 	
-	private ActionImpl(String label){
+	/**
+	 * Remove an action from memory and from the actions of its acts.
+	 * @param memory The agent's memory
+	 * @param action The action to remove
+	 */
+	private static void remove(AgentMemory memory, Action action){
+		memory.getActions().remove(action.getLabel());
+		for (Act act : action.getActs()){
+			List<Action> actions = memory.getActActions().get(act);
+			boolean first = (actions.get(0) == action);
+			actions.remove(action);
+			if (actions.isEmpty())
+				memory.getActActions().remove(act);
+			if (first)
+				moveSequences(memory, act, action, actions.isEmpty() ? null : actions.get(0));
+		}
+	}
+	
+	private ActionImpl(AgentMemory memory, String label){
+		this.memory = memory;
+		this.index = memory.nextActionIndex();
 		this.label = label;
 	}
 	
@@ -128,8 +246,22 @@ public class ActionImpl implements Action {
 	}
 	
 	public void addAct(Act act){
-		if (!this.acts.contains(act))
+		if (this.actSet.add(act)){
 				this.acts.add(act);
+				this.version++;
+				// Actions are iterated in the order of creation, so keep the actions of the act in that order.
+				List<Action> actions = this.memory.getActActions().get(act);
+				if (actions == null){
+					actions = new ArrayList<Action>(2);
+					this.memory.getActActions().put(act, actions);
+				}
+				int i = actions.size();
+				while (i > 0 && ((ActionImpl)actions.get(i - 1)).index > this.index)
+					i--;
+				actions.add(i, this);
+				if (i == 0)
+					moveSequences(this.memory, act, actions.size() > 1 ? actions.get(1) : null, this);
+		}
 	}
 	
 	public List<Act> getActs(){
@@ -137,7 +269,11 @@ public class ActionImpl implements Action {
 	}
 	
 	public boolean contains(Act act){
-		return this.acts.contains(act);
+		return this.actSet.contains(act);
+	}
+
+	public int getVersion(){
+		return this.version;
 	}
 
 	/**
@@ -161,6 +297,11 @@ public class ActionImpl implements Action {
 		return ret;
 	}
 
+	public int hashCode()
+	{
+		return this.label.hashCode();
+	}
+
 //	public Appearance predictPostAppearance(Appearance preAppearance) {
 //		Appearance postAppearance = null;
 //		if (preAppearance != null)
@@ -48,6 +48,11 @@ public interface Appearance {
 
 	public void setFlowAct(Act flowAct);
 
+	/**
+	 * @return A number that changes each time the acts of this appearance change.
+	 */
+	public int getVersion();
+
 	public Action getDiscriminentAction();
 
 	public void setDiscriminentAction(Action discriminentAction);
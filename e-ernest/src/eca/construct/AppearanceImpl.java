@@ -3,10 +3,10 @@ package eca.construct;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import tracing.ITracer;
+import eca.AgentMemory;
 import eca.construct.egomem.Area;
 import eca.construct.egomem.PhenomenonType;
 import eca.ss.enaction.Act;
@@ -25,36 +25,38 @@ public class AppearanceImpl implements Appearance {
 	/** Appearance END */
 	public static String OBSERVATION_LABEL_END = "END";
 
-    private static Map<String , Appearance> OBSERVATIONS = new HashMap<String , Appearance>() ;
-
 	private String label;
 	private Act flowAct;
 	private List<Act> evokingActs = new ArrayList<Act>();
 	private List<Act> affordedActs = new ArrayList<Act>();
 
 	private Act stillAct = null;
+	private int version = 0;
 	private Action discriminentAction = null; 
 	
 	//private PhenomenonType phenomenonType;
 	//private Area area;
 	
 	/**
+	 * @param memory The agent's memory
 	 * @return The list of all the appearances known by the agent thus far
 	 */
-	public static Collection<Appearance> getAppearances() {
-		return OBSERVATIONS.values();
+	public static Collection<Appearance> getAppearances(AgentMemory memory) {
+		return memory.getAppearances().values();
 	}
 	
 	/**
 	 * Create or get an appearance from its act.
+	 * @param memory The agent's memory
 	 * @param act The appearance's act
 	 * @return The created or retrieved action.
 	 */
-	public static Appearance createOrGet(Act act){
+	public static Appearance createOrGet(AgentMemory memory, Act act){
+		Map<String , Appearance> appearances = memory.getAppearances();
 		String key = createKey(act);
-		if (!OBSERVATIONS.containsKey(key))
-			OBSERVATIONS.put(key, new AppearanceImpl(key));			
-		return OBSERVATIONS.get(key);
+		if (!appearances.containsKey(key))
+			appearances.put(key, new AppearanceImpl(key));			
+		return appearances.get(key);
 	}
 	
 //	public static Appearance evoke(Act act){
@@ -83,24 +85,26 @@ public class AppearanceImpl implements Appearance {
 	}
 
 	/**
+	 * @param memory The agent's memory
 	 * @param act The act whose appearance we are searching for
 	 * @return The first appearance found that contains act. Null if no appearance found.
 	 */
-	public static List<Appearance> getEvokedAppeareances(Act act){
+	public static List<Appearance> getEvokedAppeareances(AgentMemory memory, Act act){
 		List<Appearance> appearances = new ArrayList<Appearance>(2);
-		for (Appearance appearance : OBSERVATIONS.values())
+		for (Appearance appearance : memory.getAppearances().values())
 			if (appearance.isEvokedBy(act))
 				appearances.add(appearance);
 		return appearances;
 	}
 	
 	/**
+	 * @param memory The agent's memory
 	 * @param act The act whose appearance we are searching for
 	 * @return The first appearance found that contains act. Null if no appearance found.
 	 */
-	public static List<Appearance> getFlowAppeareances(Act act){
+	public static List<Appearance> getFlowAppeareances(AgentMemory memory, Act act){
 		List<Appearance> appearances = new ArrayList<Appearance>(2);
-		for (Appearance appearance : OBSERVATIONS.values())
+		for (Appearance appearance : memory.getAppearances().values())
 			if (act.equals(appearance.getFlowAct()))
 				appearances.add(appearance);
 		return appearances;
@@ -108,17 +112,18 @@ public class AppearanceImpl implements Appearance {
 	
 	/**
 	 * Merges two appearances
+	 * @param memory The agent's memory
 	 * @param preAppearance The appearance before
 	 * @param postAppearance The appearance after
 	 * @param tracer The tracer
 	 */
-	public static void merge(Appearance preAppearance, Appearance postAppearance, ITracer tracer){
+	public static void merge(AgentMemory memory, Appearance preAppearance, Appearance postAppearance, ITracer tracer){
 		
 		if (!postAppearance.equals(preAppearance)){
 			for (Act act : preAppearance.getActs())
 				postAppearance.addAct(act);
 			
-			OBSERVATIONS.remove(preAppearance.getLabel());
+			memory.getAppearances().remove(preAppearance.getLabel());
 	
 			if (tracer != null){
 				tracer.addEventElement("merge_appearance", postAppearance.getLabel() + " absorbs " + preAppearance.getLabel());
@@ -140,8 +145,10 @@ public class AppearanceImpl implements Appearance {
 	}
 	
 	public void addAct(Act act){
-		if (!this.evokingActs.contains(act))
+		if (!this.evokingActs.contains(act)){
 				this.evokingActs.add(act);
+				this.version++;
+		}
 	}
 	
 	public List<Act> getActs(){
@@ -219,8 +226,10 @@ public class AppearanceImpl implements Appearance {
 	}
 
 	public void addAffordedAct(Act act) {
-		if (!this.affordedActs.contains(act))
+		if (!this.affordedActs.contains(act)){
 			this.affordedActs.add(act);
+			this.version++;
+		}
 	}
 
 	public Act getFlowAct() {
@@ -229,6 +238,11 @@ public class AppearanceImpl implements Appearance {
 
 	public void setFlowAct(Act flowAct) {
 		this.flowAct = flowAct;
+		this.version++;
+	}
+
+	public int getVersion() {
+		return this.version;
 	}
 
 }
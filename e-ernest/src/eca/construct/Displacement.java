@@ -1,8 +1,7 @@
 package eca.construct;
 
-import javax.media.j3d.Transform3D;
-
 import eca.construct.egomem.Area;
+import eca.spas.Transform2D;
 
 
 /**
@@ -17,11 +16,11 @@ public interface Displacement {
 	public String getLabel();
 	
 	/**
-	 * @return The 3D transformation
+	 * @return The transformation
 	 */
-	public Transform3D getTransform3D();
+	public Transform2D getTransform();
 	
-	public void setTransform3D(Transform3D t);
+	public void setTransform(Transform2D t);
 
 	public Area getPreArea();
 
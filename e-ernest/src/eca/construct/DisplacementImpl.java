@@ -1,12 +1,10 @@
 package eca.construct;
 
-import java.util.HashMap;
 import java.util.Map;
-import javax.media.j3d.Transform3D;
 
+import eca.AgentMemory;
 import eca.construct.egomem.Area;
-
-import utils.ErnestUtils;
+import eca.spas.Transform2D;
 
 /**
  * A transformation in spatial memory
@@ -14,8 +12,6 @@ import utils.ErnestUtils;
  */
 public class DisplacementImpl implements Displacement {
 
-	private static Map<String , Displacement> DISPLACEMENTS = new HashMap<String , Displacement>() ;
-
 	/** Appearance DOWN */
 	public static String DISPLACEMENT_LABEL_CHANGE = "CHANGE";
 	/** Appearance UP */
@@ -26,30 +22,34 @@ public class DisplacementImpl implements Displacement {
 	
 	private String label;
 	
-	private Transform3D transform3D = new Transform3D();
+	private Transform2D transform = Transform2D.IDENTITY;
 	private Area preArea = null;
 	private Area postArea = null;
 	
 	/**
+	 * @param memory The agent's memory
 	 * @param label The displacement's label
 	 * @return The displacement
 	 */
-	public static Displacement createOrGet(String label){
-		if (!DISPLACEMENTS.containsKey(label))
-			DISPLACEMENTS.put(label, new DisplacementImpl(label));			
-		return DISPLACEMENTS.get(label);
+	public static Displacement createOrGet(AgentMemory memory, String label){
+		Map<String , Displacement> displacements = memory.getDisplacements();
+		if (!displacements.containsKey(label))
+			displacements.put(label, new DisplacementImpl(label));			
+		return displacements.get(label);
 	}
 	
 	/**
+	 * @param memory The agent's memory
 	 * @param preArea The area before displacement
 	 * @param postArea The area after displacement
 	 * @return The displacement
 	 */
-	public static Displacement createOrGet(Area preArea, Area postArea){
+	public static Displacement createOrGet(AgentMemory memory, Area preArea, Area postArea){
+		Map<String , Displacement> displacements = memory.getDisplacements();
 		String label = createKey(preArea, postArea);
-		if (!DISPLACEMENTS.containsKey(label))
-			DISPLACEMENTS.put(label, new DisplacementImpl(preArea, postArea));			
-		return DISPLACEMENTS.get(label);
+		if (!displacements.containsKey(label))
+			displacements.put(label, new DisplacementImpl(preArea, postArea));			
+		return displacements.get(label);
 	}
 	
 	private static String createKey(Area preArea, Area postArea){
@@ -57,34 +57,36 @@ public class DisplacementImpl implements Displacement {
 	}
 	
 	/**
+	 * @param memory The agent's memory
 	 * @param t The transformation that defines this displacement
 	 * @return The displacement
 	 */
-	public static Displacement createOrGet(Transform3D t){
+	public static Displacement createOrGet(AgentMemory memory, Transform2D t){
+		Map<String , Displacement> displacements = memory.getDisplacements();
 		String label = createKey(t);
-		if (!DISPLACEMENTS.containsKey(label))
-			DISPLACEMENTS.put(label, new DisplacementImpl(t));			
-		return DISPLACEMENTS.get(label);
+		if (!displacements.containsKey(label))
+			displacements.put(label, new DisplacementImpl(t));			
+		return displacements.get(label);
 	}
 	
 	/**
 	 * @param t The transformation that defines this displacement
 	 * @return The displacement
 	 */
-	private static String createKey(Transform3D t) {
+	private static String createKey(Transform2D t) {
 		String key = "stay";
-		float angle = ErnestUtils.angle(t);
+		float angle = t.getAngle();
 		if (Math.abs(angle) > .1){
 			if ( angle > 0)	key = "^";
 			else			key ="v";
 		}
 		else{
-			if (ErnestUtils.translationX(t) > .5) key =".";
+			if (t.getX() > .5) key =".";
 			else key = "<";
 		}
 		
 		// Only distinguish between stay and move.
-		if (t.epsilonEquals(new Transform3D(), .1f))
+		if (t.epsilonEquals(Transform2D.IDENTITY, .1f))
 			key = "stay";
 		else
 			key = "move";
@@ -102,22 +104,22 @@ public class DisplacementImpl implements Displacement {
 		this.label = label;
 	}
 	
-	private DisplacementImpl(Transform3D t){
+	private DisplacementImpl(Transform2D t){
 		this.label = createKey(t);
-		this.transform3D.set(t);
+		this.transform = t;
 	}
 
 	public String getLabel() {
 		return label;
 	}
 	
-	public void setTransform3D(Transform3D transform3D){
-		this.transform3D.set(transform3D);
+	public void setTransform(Transform2D transform){
+		this.transform = transform;
 	}
 	
-	public Transform3D getTransform3D(){
-		Transform3D t = this.transform3D;
-		if (this.label.equals("<")) t = new Transform3D();
+	public Transform2D getTransform(){
+		Transform2D t = this.transform;
+		if (this.label.equals("<")) t = Transform2D.IDENTITY;
 		return t;
 	}
 
@@ -136,7 +138,7 @@ public class DisplacementImpl implements Displacement {
 		else
 		{
 			Displacement other = (Displacement)o;
-			//ret = (other.getTransform3D().epsilonEquals(transform3D, .1));
+			//ret = (other.getTransform().epsilonEquals(transform, .1));
 			ret = (other.getLabel().equals(this.label));
 		}
 		
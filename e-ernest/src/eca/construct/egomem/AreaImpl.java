@@ -1,7 +1,8 @@
 package eca.construct.egomem;
 
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import javax.vecmath.Point3f;
 import utils.ErnestUtils;
@@ -26,24 +27,27 @@ public class AreaImpl implements Area {
 	/** Area to the rear - left */
 	public static String E = "E";
 
-	
-	private static Map<String , Area> AREAS = new HashMap<String , Area>() ;
+	/** The areas are fixed and immutable, so they are shared by all the agents */
+	private static final Map<String , Area> AREAS;
+	static {
+		Map<String , Area> areas = new LinkedHashMap<String , Area>();
+		for (String label : new String[]{O, A, B, C, D, E})
+			areas.put(label, new AreaImpl(label));
+		AREAS = Collections.unmodifiableMap(areas);
+	}
 
 	private String label;
 	
 	/**
-	 * @param point The point from which to create or get the area
+	 * @param point The point from which to get the area
 	 * @return The area
 	 */
 	public static Area createOrGet(Point3f point){
-		String label = createKey(point);
-		if (!AREAS.containsKey(label))
-			AREAS.put(label, new AreaImpl(label));			
-		return AREAS.get(label);
+		return AREAS.get(createKey(point));
 	}
 	
 	/**
-	 * @return A collection of the existing areas.
+	 * @return A collection of the areas.
 	 */
 	public static Collection<Area> getAREAS() {
 		return AREAS.values();
@@ -1,7 +1,7 @@
 package eca.construct.egomem;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import utils.ErnestUtils;
 
 /**
@@ -10,7 +10,8 @@ import utils.ErnestUtils;
  */
 public class AspectImpl implements Aspect {
 
-	private static Map<String , Aspect> ASPECTS = new HashMap<String , Aspect>() ;
+	/** Aspects are immutable values, so they are shared by all the agents and environments */
+	private static ConcurrentMap<String , Aspect> ASPECTS = new ConcurrentHashMap<String , Aspect>() ;
 	private int displayCode;
 //	private int value;
 
@@ -20,9 +21,14 @@ public class AspectImpl implements Aspect {
 	 */
 	public static Aspect createOrGet(int displayCode){
 		String key = ErnestUtils.hexColor(displayCode);
-		if (!ASPECTS.containsKey(key))
-			ASPECTS.put(key, new AspectImpl(displayCode));			
-		return ASPECTS.get(key);
+		Aspect aspect = ASPECTS.get(key);
+		if (aspect == null){
+			Aspect newAspect = new AspectImpl(displayCode);
+			aspect = ASPECTS.putIfAbsent(key, newAspect);
+			if (aspect == null)
+				aspect = newAspect;
+		}
+		return aspect;
 	}
 	
 	private AspectImpl(int displayCode){
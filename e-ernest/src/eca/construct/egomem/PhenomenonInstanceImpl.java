@@ -1,12 +1,12 @@
 package eca.construct.egomem;
 
-import javax.media.j3d.Transform3D;
 import javax.vecmath.Point3f;
 import tracing.ITracer;
 import utils.ErnestUtils;
 import eca.ActInstance;
 import eca.spas.Place;
 import eca.spas.PlaceImpl;
+import eca.spas.Transform2D;
 
 /**
  * An instance of phenomenon known to be present in the surrounding environment
@@ -16,6 +16,7 @@ public class PhenomenonInstanceImpl implements PhenomenonInstance {
 
 	private PhenomenonType phenomenonType = null;
 	private Place place;
+	/** The clock, in addition to the ticks of spatial memory */
 	private int clock = 0;
 	private boolean focus = false;
 	
@@ -52,7 +53,7 @@ public class PhenomenonInstanceImpl implements PhenomenonInstance {
 		return this.place;
 	}
 	
-	public void transform(Transform3D transform){
+	public void transform(Transform2D transform){
 		this.place.transform(transform);
 	}
 	
@@ -82,7 +83,7 @@ public class PhenomenonInstanceImpl implements PhenomenonInstance {
 	}
 
 	public int getClock() {
-		return this.clock;
+		return this.clock + this.place.getNbTicks();
 	}
 
 	public String getDisplayLabel() {
@@ -111,12 +112,13 @@ public class PhenomenonInstanceImpl implements PhenomenonInstance {
 		
 		Object pe = tracer.addSubelement(e, "phenomenon_instance");		
 		this.phenomenonType.trace(tracer, pe);
-		tracer.addSubelement(pe, "position", "(" + ErnestUtils.format(this.place.getPosition().x, 1) + "," + ErnestUtils.format(this.place.getPosition().y, 1) + ")");
+		if (tracer.accepts("position"))
+			tracer.addSubelement(pe, "position", "(" + ErnestUtils.format(this.place.getPosition().x, 1) + "," + ErnestUtils.format(this.place.getPosition().y, 1) + ")");
 		tracer.addSubelement(pe, "area", this.place.getArea().getLabel());
 	}
 
 	public void setClock(int clock) {
-		this.clock=clock;
+		this.clock = clock - this.place.getNbTicks();
 	}
 
 	public boolean isFocus() {
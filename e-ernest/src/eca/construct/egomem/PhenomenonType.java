@@ -13,8 +13,8 @@ import eca.Primitive;
  */
 public interface PhenomenonType {
 	
-	/** Predefined phenomenon type */
-	public static PhenomenonType EMPTY = PhenomenonTypeImpl.createOrGet("0");
+	/** Predefined phenomenon type (each agent's memory holds its own phenomenon type with this label) */
+	public static PhenomenonType EMPTY = new PhenomenonTypeImpl("0");
 	
 	/**
 	 * @return This PhenomenonType's label.
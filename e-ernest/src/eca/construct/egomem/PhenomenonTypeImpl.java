@@ -3,11 +3,11 @@ package eca.construct.egomem;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import tracing.ITracer;
+import eca.AgentMemory;
 import eca.Primitive;
 
 /**
@@ -18,48 +18,51 @@ import eca.Primitive;
  */
 public class PhenomenonTypeImpl implements PhenomenonType {
 	
-	private static Map<String , PhenomenonType> PHENOMENA = new HashMap<String , PhenomenonType>() ;
-	private static int index = 0;
-	
 	private String label;
 	private Aspect aspect = Aspect.MOVE;
 	private List<Primitive> primitives = new ArrayList<Primitive>();
 	private int attractiveness = 0;
 
 	/**
+	 * @param memory The agent's memory
 	 * @return The list of all types of phenomenon known by the agent thus far
 	 */
-	public static Collection<PhenomenonType> getPhenomenonTypes() {
-		return PHENOMENA.values();
+	public static Collection<PhenomenonType> getPhenomenonTypes(AgentMemory memory) {
+		return memory.getPhenomenonTypes().values();
 	}
 	
 	/**
+	 * @param memory The agent's memory
 	 * @param label The aspect's label
 	 * @return The aspect
 	 */
-	public static PhenomenonType createOrGet(String label){
-		if (!PHENOMENA.containsKey(label))
-			PHENOMENA.put(label, new PhenomenonTypeImpl(label));			
-		return PHENOMENA.get(label);
+	public static PhenomenonType createOrGet(AgentMemory memory, String label){
+		Map<String , PhenomenonType> phenomena = memory.getPhenomenonTypes();
+		if (!phenomena.containsKey(label))
+			phenomena.put(label, new PhenomenonTypeImpl(label));			
+		return phenomena.get(label);
 	}
 	
 	/**
 	 * Creates a new aspect using an incremental label
+	 * @param memory The agent's memory
 	 * @return The new created aspect
 	 */
-	public static PhenomenonType createNew(){
-		index++;
-		PHENOMENA.put(index + "", new PhenomenonTypeImpl(index +""));			
-		return PHENOMENA.get(index + "");
+	public static PhenomenonType createNew(AgentMemory memory){
+		String label = memory.nextPhenomenonTypeIndex() + "";
+		PhenomenonType phenomenonType = new PhenomenonTypeImpl(label);
+		memory.getPhenomenonTypes().put(label, phenomenonType);			
+		return phenomenonType;
 	}
 	
 	/**
+	 * @param memory The agent's memory
 	 * @param primitive The primitive that evoke this phenomenon.
 	 * @return The evoked phenomenon.
 	 */
-	public static PhenomenonType evoke(Primitive primitive){
+	public static PhenomenonType evoke(AgentMemory memory, Primitive primitive){
 		PhenomenonType phenomenonType = null;
-		for (PhenomenonType p : getPhenomenonTypes()){
+		for (PhenomenonType p : getPhenomenonTypes(memory)){
 			if (p.contains(primitive))
 				phenomenonType = p;
 		}		
@@ -67,12 +70,13 @@ public class PhenomenonTypeImpl implements PhenomenonType {
 	}
 	
 	/**
-	 * @param primitive The primitive that evoke this phenomenon.
+	 * @param memory The agent's memory
+	 * @param aspect The aspect that evoke this phenomenon.
 	 * @return The evoked phenomenon.
 	 */
-	public static PhenomenonType evoke(Aspect aspect){
+	public static PhenomenonType evoke(AgentMemory memory, Aspect aspect){
 		PhenomenonType phenomenonType = null;
-		for (PhenomenonType p : getPhenomenonTypes()){
+		for (PhenomenonType p : getPhenomenonTypes(memory)){
 			if (p.getAspect().equals(aspect))
 				phenomenonType = p;
 		}		
@@ -99,13 +103,14 @@ public class PhenomenonTypeImpl implements PhenomenonType {
 	 * into the new PhenomenonType.
 	 * The interactions attached to the enacted act's phenomenonType are transferred 
 	 * to the new phenomenonType
+	 * @param memory The agent's memory
 	 * @param primitive The primitive to merge. 
 	 * @param newPhenomenonType The second phenomenonType to which to merge (kept).
 	 */
-	public static void merge(Primitive primitive, PhenomenonType newPhenomenonType){
+	public static void merge(AgentMemory memory, Primitive primitive, PhenomenonType newPhenomenonType){
 		if (!newPhenomenonType.contains(primitive)){
 			PhenomenonType oldPhenomenonType = null;
-			for (PhenomenonType phenomenonType : getPhenomenonTypes()){
+			for (PhenomenonType phenomenonType : getPhenomenonTypes(memory)){
 				if (phenomenonType.contains(primitive))
 					oldPhenomenonType = phenomenonType;
 			}
@@ -113,13 +118,13 @@ public class PhenomenonTypeImpl implements PhenomenonType {
 			if (oldPhenomenonType != null){
 				for (Primitive p : oldPhenomenonType.getPrimitives())
 					newPhenomenonType.addPrimitive(p);
-				PHENOMENA.remove(oldPhenomenonType.getLabel());
+				memory.getPhenomenonTypes().remove(oldPhenomenonType.getLabel());
 			}
 			newPhenomenonType.addPrimitive(primitive);
 		}
 	}
 	
-	private PhenomenonTypeImpl(String label){
+	PhenomenonTypeImpl(String label){
 		this.label = label;
 	}
 
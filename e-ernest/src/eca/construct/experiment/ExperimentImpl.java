@@ -6,6 +6,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import tracing.ITracer;
+import eca.AgentMemory;
 import eca.construct.Action;
 import eca.construct.Appearance;
 import eca.construct.Displacement;
@@ -18,7 +19,6 @@ import eca.ss.enaction.Act;
  */
 public class ExperimentImpl implements Experiment {
 	
-	private static Map<String , Experiment> EXPERIMENTS = new HashMap<String , Experiment>() ;
 	private String label;
 	private Action action;
 	private Appearance appearance;
@@ -29,15 +29,17 @@ public class ExperimentImpl implements Experiment {
 	private float confidence = 0.5f;
 
 	/**
+	 * @param memory The agent's memory.
 	 * @param preAppearance The Appearance.
 	 * @param action The Action.
 	 * @return The new or old experiment.
 	 */
-	public static Experiment createOrGet(Appearance preAppearance, Action action){
+	public static Experiment createOrGet(AgentMemory memory, Appearance preAppearance, Action action){
+		Map<String , Experiment> experiments = memory.getExperiments();
 		String key = createKey(preAppearance, action);
-		if (!EXPERIMENTS.containsKey(key))
-			EXPERIMENTS.put(key, new ExperimentImpl(preAppearance, action));			
-		return EXPERIMENTS.get(key);
+		if (!experiments.containsKey(key))
+			experiments.put(key, new ExperimentImpl(preAppearance, action));			
+		return experiments.get(key);
 	}
 
 	private static String createKey(Appearance preAppearance, Action action) {
@@ -116,8 +118,12 @@ public class ExperimentImpl implements Experiment {
 		return s;
 	}
 	
-	public static Collection<Experiment> getExperiments() {
-		return EXPERIMENTS.values();
+	/**
+	 * @param memory The agent's memory.
+	 * @return The experiments known by the agent.
+	 */
+	public static Collection<Experiment> getExperiments(AgentMemory memory) {
+		return memory.getExperiments().values();
 	}
 
 //	public Act predictAct() {
@@ -4,12 +4,13 @@ import eca.construct.Action;
 import eca.construct.Appearance;
 import eca.construct.experiment.Experiment;
 import eca.ss.enaction.Act;
+import tracing.ITraceValue;
 
 /**
  * A proposition to perform an action. 
  * @author ogeorgeon
  */
-public interface ActionProposition extends Comparable<ActionProposition> {
+public interface ActionProposition extends Comparable<ActionProposition>, ITraceValue {
 	/**
 	 * @return The interaction proposed by this proposition.
 	 */
@@ -109,6 +109,10 @@ public class ActionPropositionImpl implements ActionProposition {
 		return proposition;
 	}
 
+	public String getTraceValue(){
+		return toString();
+	}
+
 //	public float getConfidence() {
 //		return confidence;
 //	}
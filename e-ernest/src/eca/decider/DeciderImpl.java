@@ -2,9 +2,15 @@ package eca.decider;
 
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import tracing.ITracer;
+import utils.Log;
+import eca.AgentMemory;
 import eca.construct.Action;
 import eca.construct.ActionImpl;
 import eca.construct.Appearance;
@@ -15,7 +21,6 @@ import eca.ss.ActProposition;
 import eca.ss.ActPropositionImpl;
 import eca.ss.IImos;
 import eca.ss.enaction.Act;
-import eca.ss.enaction.ActImpl;
 import eca.ss.enaction.Enaction;
 import eca.ss.enaction.EnactionImpl;
 
@@ -31,20 +36,51 @@ public class DeciderImpl implements Decider
 	/** The maximal length of acts. */
 	private int maxSchemaLength = 10;
 
+	/** Default number of traced decisions between two full snapshots of the actions and observations */
+	public static final int DEFAULT_SNAPSHOT_INTERVAL = 100;
+
 	private IImos imos;
 	private ITracer tracer;
+	private AgentMemory memory;
+
+	private int snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+	/** The number of best propositions traced at each decision (0 for none) */
+	private int nbTopPropositions = 0;
+	private int nbTracedDecisions = 0;
+	/** The actions and appearances as they were last traced, by label */
+	private Map<String, Traced> tracedActions = new HashMap<String, Traced>();
+	private Map<String, Traced> tracedAppearances = new HashMap<String, Traced>();
 
 	/**
 	 * @param imos The sequential system
 	 * @param spas The spatial system
+	 * @param memory The memory of the agent
 	 */
-	public DeciderImpl(IImos imos, Spas spas){
+	public DeciderImpl(IImos imos, Spas spas, AgentMemory memory){
 		this.imos = imos;
+		this.memory = memory;
 	}
 
 	public void setTracer(ITracer tracer){
 		this.tracer = tracer;
 	}
+
+	/**
+	 * Each decision traces the actions and observations that were created, changed or removed since the previous traced decision,
+	 * and every snapshotInterval traced decisions, all of them.
+	 * @param snapshotInterval The number of traced decisions between two full snapshots (1 to trace all of them at each decision).
+	 */
+	public void setSnapshotInterval(int snapshotInterval){
+		this.snapshotInterval = Math.max(1, snapshotInterval);
+	}
+	
+	/**
+	 * Trace the best propositions of each decision in the top_propositions element, for diagnostics.
+	 * @param nbTopPropositions The number of propositions to trace (0 for none).
+	 */
+	public void setNbTopPropositions(int nbTopPropositions){
+		this.nbTopPropositions = nbTopPropositions;
+	}
 	
 	public void setRegularityThreshold(int regularityThreshold)
 	{
@@ -58,16 +94,25 @@ public class DeciderImpl implements Decider
 	
 	public Enaction decide(Enaction enaction) 
 	{
-		System.out.println("New decision ================ ");
+		Log.debug("New decision ================ ");
 		
 		List<Appearance> preAppearances = enaction.getAppearances();
 		
 		// Choose the next action
 		ArrayList<ActProposition> actPropositions = this.imos.propose(enaction);	
 		List<ActionProposition> actionPropositions = proposeActions(actPropositions, preAppearances);
-		Collections.sort(actionPropositions, new ActionPropositionComparator(ActionPropositionComparator.SS) ); // or SPAS
 		
+		// Select the first proposition with the highest weight
+		ActionPropositionComparator comparator = new ActionPropositionComparator(ActionPropositionComparator.SS); // or SPAS
 		ActionProposition selectedProposition = actionPropositions.get(0);
+		for (ActionProposition actionProposition : actionPropositions)
+			if (comparator.compare(actionProposition, selectedProposition) < 0)
+				selectedProposition = actionProposition;
+		if (this.nbTopPropositions > 0 && this.tracer != null && this.tracer.accepts("top_propositions")){
+			Object topElmt = this.tracer.addEventElement("top_propositions");
+			for (ActionProposition ap : selectTop(actionPropositions, this.nbTopPropositions, comparator))
+				this.tracer.addSubelement(topElmt, "proposition", ap);
+		}
 		Action	selectedAction = selectedProposition.getAction();
 		Act intendedAct = selectedAction.getActs().get(0);
 		
@@ -75,7 +120,7 @@ public class DeciderImpl implements Decider
 		trace(selectedProposition);
 		
 		// Prepare the new enaction.		
-		Enaction newEnaction = new EnactionImpl();	
+		Enaction newEnaction = new EnactionImpl(memory);	
 		newEnaction.setTopIntendedAct(intendedAct);
 		newEnaction.setTopRemainingAct(intendedAct);
 		newEnaction.setPreviousLearningContext(enaction.getInitialLearningContext());
@@ -99,34 +144,33 @@ public class DeciderImpl implements Decider
 			Act proposedAct = actProposition.getAct();
 			if (proposedAct.getWeight() > this.regularityThreshold){
 				if (proposedAct.getLength() <= this.maxSchemaLength){
-					if (ActionImpl.getAction(proposedAct) == null){
+					if (ActionImpl.getAction(memory, proposedAct) == null){
 						if (proposedAct.isPrimitive()){
-							Action a = ActionImpl.createOrGet(proposedAct);
+							Action a = ActionImpl.createOrGet(memory, proposedAct);
 							a.addAct(proposedAct);
 							if (this.tracer != null) this.tracer.addEventElement("new_action", a.getLabel());							
 						}
 						else{
 							// Check the reliability of this sequence
 							boolean reliable = true;
-							for (Act act : ActImpl.getACTS())
-								if (proposedAct.getPreAct().equals(act.getPreAct()))
-									if (ActionImpl.getAction(proposedAct.getPostAct()).equals(ActionImpl.getAction(act.getPostAct())))
-									//if (proposedAct.getPostAct().isPrimitive() && act.getPostAct().isPrimitive()) 
-										if(!proposedAct.getPostAct().equals(act.getPostAct())){
-											reliable = false;
-											if (this.tracer != null) this.tracer.addEventElement("unreliable_sequence", proposedAct.getLabel() + " due to " + act.getLabel());
-										}
+							Action postAction = ActionImpl.getAction(memory, proposedAct.getPostAct());
+							for (Act act : ActionImpl.getSequences(memory, proposedAct.getPreAct(), postAction))
+								//if (proposedAct.getPostAct().isPrimitive() && act.getPostAct().isPrimitive()) 
+								if(!proposedAct.getPostAct().equals(act.getPostAct())){
+									reliable = false;
+									if (this.tracer != null) this.tracer.addEventElement("unreliable_sequence", proposedAct.getLabel() + " due to " + act.getLabel());
+								}
 								
 							if (reliable){
 								// Create the action
-								Action a = ActionImpl.createOrGet(proposedAct);
+								Action a = ActionImpl.createOrGet(memory, proposedAct);
 								a.addAct(proposedAct);
 								if (this.tracer != null) this.tracer.addEventElement("new_action", a.getLabel());
 							
 								// Create the appearance
 								if (proposedAct.getPreAct().isPrimitive())
 									proposedAct.getPreAct().getPrimitive().setDisplacement(DisplacementImpl.DISPLACEMENT_STILL);
-								Appearance appearance = AppearanceImpl.createOrGet(proposedAct.getPreAct());
+								Appearance appearance = AppearanceImpl.createOrGet(memory, proposedAct.getPreAct());
 								appearance.addAct(proposedAct.getPreAct());
 								appearance.setStillAct(proposedAct.getPreAct());
 								appearance.setFlowAct(proposedAct);
@@ -154,14 +198,34 @@ public class DeciderImpl implements Decider
 		for (ActProposition proposition : forwardedActPropositions)
 			actPropositions.add(proposition);
 		
+		// Add weight to the actions that contain the acts proposed by IMOS
+		Map<Action, ActionProposition> proposedActions = new HashMap<Action, ActionProposition>();
+		for (ActProposition actProposition : actPropositions){
+			for (Action action : ActionImpl.getActions(memory, actProposition.getAct())){
+				ActionProposition actionProposition = proposedActions.get(action);
+				if (actionProposition == null){
+					actionProposition = new ActionPropositionImpl(action, 0);
+					proposedActions.put(action, actionProposition);
+				}
+				if (actionProposition.getSSActWeight() <= actProposition.getWeight()){
+					actionProposition.setSpatialAnticipatedAct(actProposition.getAct());
+					actionProposition.setSSActWeight(actProposition.getWeight());
+				}
+				actionProposition.addSSWeight(actProposition.getWeightedValue());
+			}
+		}
+		
 		// For each existing action, propose it according to act propositions coming from IMOS
-		for (Action action : ActionImpl.getACTIONS()){
+		for (Action action : ActionImpl.getACTIONS(memory)){
 			// All Actions are proposed with their anticipated Act predicted on the basis of the preAppearance
 			//Appearance anticipatedAppearance = action.predictPostAppearance(preAppearance); // proposition based on spatial representation
 			
 			//Appearance anticipatedAppearance = AppearanceImpl.evoke(action.getActs().get(0)); 
 			
-			ActionProposition actionProposition = new ActionPropositionImpl(action, 0);
+			ActionProposition actionProposition = proposedActions.get(action);
+			boolean isProposed = (actionProposition != null);
+			if (!isProposed)
+				actionProposition = new ActionPropositionImpl(action, 0);
 			//actionProposition.setAnticipatedAppearance(anticipatedAppearance);
 			//actionProposition.setConfidence(confidence);
 //			if (preAppearance != null){
@@ -171,35 +235,50 @@ public class DeciderImpl implements Decider
 //				//actionProposition.setExperiment(ExperimentImpl.createOrGet(preAppearance, action));
 //			}
 			
-			boolean isProposed = false;
-			// Add weight to this action according to the actPropositions that propose an act whose primitive belongs to this action
-			for (ActProposition actProposition : actPropositions){
-				if (action.contains(actProposition.getAct())){
-					if (actionProposition.getSSActWeight() <= actProposition.getWeight()){
-						actionProposition.setSpatialAnticipatedAct(actProposition.getAct());
-						actionProposition.setSSActWeight(actProposition.getWeight());
-					}
-					actionProposition.addSSWeight(actProposition.getWeightedValue());
-					isProposed = true;
-				}
-			}
 			if (action.getActs().get(0).isPrimitive() || isProposed)	
 				actionPropositions.add(actionProposition);			
 		}
 		
 		// trace action propositions 
-		Object decisionElmt = null;
-		if (this.tracer != null){
-			decisionElmt = this.tracer.addEventElement("actionPropositions", true);
-			for (ActionProposition ap : actionPropositions){
-				System.out.println("propose action " + ap.getAction().getLabel() + " with weight " + ap.getSSWeight());
-				this.tracer.addSubelement(decisionElmt, "proposition", ap.toString());
-			}
+		if (Log.isEnabled(Log.TRACE))
+			for (ActionProposition ap : actionPropositions)
+				Log.log(Log.TRACE, "propose action ", ap.getAction().getLabel(), " with weight ", ap.getSSWeight());
+		if (this.tracer != null && this.tracer.accepts("actionPropositions")){
+			Object decisionElmt = this.tracer.addEventElement("actionPropositions", true);
+			for (ActionProposition ap : actionPropositions)
+				this.tracer.addSubelement(decisionElmt, "proposition", ap);
 		}
 		
 		return actionPropositions;
 	}
 	
+	/**
+	 * Select the best propositions with a bounded heap.
+	 * @param actionPropositions The action propositions.
+	 * @param k The maximum number of propositions to select.
+	 * @param comparator The order of the propositions.
+	 * @return The k first propositions in the order of the comparator (ties in the order of the list).
+	 */
+	private static List<ActionProposition> selectTop(final List<ActionProposition> actionPropositions, int k, final ActionPropositionComparator comparator){
+		// The head of the heap is the worst selected proposition
+		Comparator<Integer> worstFirst = new Comparator<Integer>(){
+			public int compare(Integer i1, Integer i2){
+				int c = comparator.compare(actionPropositions.get(i2), actionPropositions.get(i1));
+				return c != 0 ? c : i2.compareTo(i1);
+			}
+		};
+		PriorityQueue<Integer> heap = new PriorityQueue<Integer>(k + 1, worstFirst);
+		for (int i = 0; i < actionPropositions.size(); i++){
+			heap.add(i);
+			if (heap.size() > k)
+				heap.poll();
+		}
+		List<ActionProposition> top = new ArrayList<ActionProposition>(heap.size());
+		while (!heap.isEmpty())
+			top.add(0, actionPropositions.get(heap.poll()));
+		return top;
+	}
+	
 	public void carry(Enaction enaction)
 	{
 		Act intendedPrimitiveInteraction = enaction.getTopRemainingAct().prescribe();
@@ -212,7 +291,7 @@ public class DeciderImpl implements Decider
 	
 		Action	selectedAction = selectedProposition.getAction();
 		Act intendedAct = selectedAction.getActs().get(0);
-		if (this.tracer != null){
+		if (this.tracer != null && this.tracer.accepts("decision")){
 			Object decisionElmt = this.tracer.addEventElement("decision", true);
 			
 			Object apElmnt = this.tracer.addSubelement(decisionElmt, "selected_proposition");
@@ -223,24 +302,80 @@ public class DeciderImpl implements Decider
 				this.tracer.addSubelement(apElmnt, "ss_value", selectedProposition.getSpatialAnticipatedAct().getValue() +"");					
 			}				
 			
-			List<Appearance> flowAppearances = AppearanceImpl.getFlowAppeareances(intendedAct);
+			List<Appearance> flowAppearances = AppearanceImpl.getFlowAppeareances(memory, intendedAct);
 			if (!flowAppearances.isEmpty())
 				for (Appearance appearance : flowAppearances)
 					this.tracer.addSubelement(decisionElmt, "appearance", appearance.getLabel());
 			
-			Object actionElmt = this.tracer.addSubelement(decisionElmt, "actions");
-			for (Action action : ActionImpl.getACTIONS())
-				action.trace(tracer, actionElmt);
+			// Full snapshot, or changes since the previous traced decision
+			boolean snapshot = nbTracedDecisions % snapshotInterval == 0;
+			nbTracedDecisions++;
+			if (snapshot){
+				tracedActions.clear();
+				tracedAppearances.clear();
+			}
 			
-			Object appearanceElmt = this.tracer.addSubelement(decisionElmt, "observations");
-			for (Appearance app : AppearanceImpl.getAppearances())
-				app.trace(tracer, appearanceElmt);
+			Object actionElmt = this.tracer.addSubelement(decisionElmt, snapshot ? "actions" : "changed_actions");
+			for (Action action : ActionImpl.getACTIONS(memory)){
+				Traced traced = tracedActions.get(action.getLabel());
+				if (traced == null){
+					traced = new Traced();
+					tracedActions.put(action.getLabel(), traced);
+				}
+				if (traced.update(action, action.getVersion()))
+					action.trace(tracer, actionElmt);
+			}
+			if (tracedActions.size() > memory.getActions().size())
+				for (Iterator<String> i = tracedActions.keySet().iterator(); i.hasNext(); ){
+					String label = i.next();
+					if (!memory.getActions().containsKey(label)){
+						this.tracer.addSubelement(actionElmt, "removed_action", label);
+						i.remove();
+					}
+				}
+			
+			Object appearanceElmt = this.tracer.addSubelement(decisionElmt, snapshot ? "observations" : "changed_observations");
+			for (Appearance app : AppearanceImpl.getAppearances(memory)){
+				Traced traced = tracedAppearances.get(app.getLabel());
+				if (traced == null){
+					traced = new Traced();
+					tracedAppearances.put(app.getLabel(), traced);
+				}
+				if (traced.update(app, app.getVersion()))
+					app.trace(tracer, appearanceElmt);
+			}
+			if (tracedAppearances.size() > memory.getAppearances().size())
+				for (Iterator<String> i = tracedAppearances.keySet().iterator(); i.hasNext(); ){
+					String label = i.next();
+					if (!memory.getAppearances().containsKey(label)){
+						this.tracer.addSubelement(appearanceElmt, "removed_observation", label);
+						i.remove();
+					}
+				}
 			
 			Object predictElmt = this.tracer.addSubelement(decisionElmt, "predict");
 			this.tracer.addSubelement(predictElmt, "act", intendedAct.getLabel());
 			
 		}		
-		System.out.println("Select:" + selectedAction.getLabel());
-		System.out.println("Act " + intendedAct.getLabel());
+		Log.debug("Select:", selectedAction.getLabel());
+		Log.debug("Act ", intendedAct.getLabel());
+	}
+
+	/**
+	 * An action or appearance as it was last traced.
+	 */
+	private static class Traced {
+		private Object object;
+		private int version;
+
+		/**
+		 * @return true if the object is new or has changed since it was last traced.
+		 */
+		boolean update(Object object, int version){
+			boolean changed = object != this.object || version != this.version;
+			this.object = object;
+			this.version = version;
+			return changed;
+		}
 	}
 }
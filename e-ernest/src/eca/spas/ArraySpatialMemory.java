@@ -0,0 +1,295 @@
+package eca.spas;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.vecmath.Point3f;
+import javax.vecmath.Vector3f;
+
+import eca.construct.egomem.PhenomenonInstance;
+
+/**
+ * A spatial memory that keeps the coordinates of its places in parallel arrays.
+ * The places of the placeables are views of their slot in the arrays (see PlaceImpl).
+ * The transformations and the fading are applied to all the slots at once by loops over the arrays.
+ * The slots are kept in the order of addition.
+ * @author Olivier
+ */
+public class ArraySpatialMemory implements SpatialMemory
+{
+	/** The number of slots in use */
+	private int size = 0;
+
+	private Placeable[] placeables = new Placeable[16];
+	private PlaceImpl[] places = new PlaceImpl[16];
+	private boolean[] phenomenon = new boolean[16];
+	private boolean[] fading = new boolean[16];
+
+	/** The coordinates of the positions */
+	private float[] x = new float[16];
+	private float[] y = new float[16];
+	private float[] z = new float[16];
+
+	/** The coordinates of the orientations */
+	private float[] ox = new float[16];
+	private float[] oy = new float[16];
+	private float[] oz = new float[16];
+
+	/** The number of ticks */
+	private int nbTicks = 0;
+
+	/**
+	 * The fading places move away from Ernest.
+	 */
+	public void tick()
+	{
+		nbTicks++;
+		for (int i = 0; i < size; i++)
+		{
+			if (fading[i])
+			{
+				x[i] = x[i] * 1.1f;
+				y[i] = y[i] * 1.1f;
+				z[i] = 0f;
+			}
+		}
+	}
+
+	public void addPlaceable(Placeable placeable)
+	{
+		PlaceImpl place = (PlaceImpl)placeable.getPlace();
+		Point3f position = place.getPosition();
+		Vector3f orientation = place.getOrientation();
+		if (size == x.length)
+			grow();
+		placeables[size] = placeable;
+		places[size] = place;
+		phenomenon[size] = placeable instanceof PhenomenonInstance;
+		fading[size] = place.isFading();
+		writePosition(size, position);
+		writeOrientation(size, orientation);
+		place.attach(this, size);
+		size++;
+	}
+
+	public void move(Placeable placeable, Point3f position)
+	{
+		placeable.setPosition(position);
+	}
+
+	public void transform(Transform2D transform)
+	{
+		double cos = transform.getCos(), sin = transform.getSin();
+		double tx = transform.getX(), ty = transform.getY();
+		for (int i = 0; i < size; i++)
+		{
+			float px = x[i];
+			x[i] = (float)(cos * px - sin * y[i] + tx);
+			y[i] = (float)(sin * px + cos * y[i] + ty);
+		}
+		for (int i = 0; i < size; i++)
+		{
+			float vx = ox[i];
+			ox[i] = (float)(cos * vx - sin * oy[i]);
+			oy[i] = (float)(sin * vx + cos * oy[i]);
+		}
+	}
+
+	/**
+	 * Clear all the places older than PERSISTENCE_DURATION.
+	 */
+	public void forgetOldPlaces()
+	{
+		int j = 0;
+		for (int i = 0; i < size; i++)
+		{
+			if (placeables[i].getClock() > SpatialMemoryImpl.PERSISTENCE_DURATION)
+				places[i].detach();
+			else
+				keep(i, j++);
+		}
+		clear(j);
+	}
+
+	public List<Placeable> getPlaceables()
+	{
+		List<Placeable> list = new ArrayList<Placeable>(size);
+		for (int i = 0; i < size; i++)
+			list.add(placeables[i]);
+		return list;
+	}
+
+	public List<PhenomenonInstance> getPhenomenonInstances()
+	{
+		List<PhenomenonInstance> list = new ArrayList<PhenomenonInstance>();
+		for (int i = 0; i < size; i++)
+			if (phenomenon[i])
+				list.add((PhenomenonInstance)placeables[i]);
+		return list;
+	}
+
+	public PhenomenonInstance getPhenomenonInstance(Point3f position)
+	{
+		// The last phenomenon instance in the cell of this position
+		int cx = Math.round(position.x);
+		int cy = Math.round(position.y);
+		for (int i = size - 1; i >= 0; i--)
+		{
+			if (phenomenon[i])
+			{
+				if (places[i].isViewOf(this, i))
+				{
+					if (Math.round(x[i]) == cx && Math.round(y[i]) == cy)
+						return (PhenomenonInstance)placeables[i];
+				}
+				else if (placeables[i].isInCell(position))
+					return (PhenomenonInstance)placeables[i];
+			}
+		}
+		return null;
+	}
+
+	public void clearPhenomenonInstanceFront()
+	{
+		int j = 0;
+		for (int i = 0; i < size; i++)
+		{
+			if (phenomenon[i] && (places[i].isViewOf(this, i) ? x[i] : placeables[i].getPlace().getPosition().x) > 0)
+				places[i].detach();
+			else
+				keep(i, j++);
+		}
+		clear(j);
+	}
+
+	/**
+	 * @return The number of ticks, that is the clock of this spatial memory.
+	 */
+	int getNbTicks()
+	{
+		return nbTicks;
+	}
+
+	float getX(int i)
+	{
+		return x[i];
+	}
+
+	float getY(int i)
+	{
+		return y[i];
+	}
+
+	void readPosition(int i, Point3f position)
+	{
+		position.x = x[i];
+		position.y = y[i];
+		position.z = z[i];
+	}
+
+	void writePosition(int i, Point3f position)
+	{
+		x[i] = position.x;
+		y[i] = position.y;
+		z[i] = position.z;
+	}
+
+	void readOrientation(int i, Vector3f orientation)
+	{
+		orientation.x = ox[i];
+		orientation.y = oy[i];
+		orientation.z = oz[i];
+	}
+
+	void writeOrientation(int i, Vector3f orientation)
+	{
+		ox[i] = orientation.x;
+		oy[i] = orientation.y;
+		oz[i] = orientation.z;
+	}
+
+	/**
+	 * Transform the position and the orientation of a slot.
+	 */
+	void transform(int i, Transform2D transform)
+	{
+		double cos = transform.getCos(), sin = transform.getSin();
+		float px = x[i];
+		x[i] = (float)(cos * px - sin * y[i] + transform.getX());
+		y[i] = (float)(sin * px + cos * y[i] + transform.getY());
+		float vx = ox[i];
+		ox[i] = (float)(cos * vx - sin * oy[i]);
+		oy[i] = (float)(sin * vx + cos * oy[i]);
+	}
+
+	void setFading(int i, boolean fading)
+	{
+		this.fading[i] = fading;
+	}
+
+	/**
+	 * Move slot i to slot j (j <= i) when the slots before i are removed.
+	 */
+	private void keep(int i, int j)
+	{
+		if (i == j)
+			return;
+		placeables[j] = placeables[i];
+		places[j] = places[i];
+		phenomenon[j] = phenomenon[i];
+		fading[j] = fading[i];
+		x[j] = x[i];
+		y[j] = y[i];
+		z[j] = z[i];
+		ox[j] = ox[i];
+		oy[j] = oy[i];
+		oz[j] = oz[i];
+		if (places[j].isViewOf(this, i))
+			places[j].attach(this, j);
+	}
+
+	/**
+	 * Clear the slots from newSize to size.
+	 */
+	private void clear(int newSize)
+	{
+		for (int i = newSize; i < size; i++)
+		{
+			placeables[i] = null;
+			places[i] = null;
+		}
+		size = newSize;
+	}
+
+	private void grow()
+	{
+		int length = x.length * 2;
+		Placeable[] newPlaceables = new Placeable[length];
+		System.arraycopy(placeables, 0, newPlaceables, 0, size);
+		placeables = newPlaceables;
+		PlaceImpl[] newPlaces = new PlaceImpl[length];
+		System.arraycopy(places, 0, newPlaces, 0, size);
+		places = newPlaces;
+		phenomenon = grow(phenomenon, length);
+		fading = grow(fading, length);
+		x = grow(x, length);
+		y = grow(y, length);
+		z = grow(z, length);
+		ox = grow(ox, length);
+		oy = grow(oy, length);
+		oz = grow(oz, length);
+	}
+
+	private float[] grow(float[] array, int length)
+	{
+		float[] newArray = new float[length];
+		System.arraycopy(array, 0, newArray, 0, size);
+		return newArray;
+	}
+
+	private boolean[] grow(boolean[] array, int length)
+	{
+		boolean[] newArray = new boolean[length];
+		System.arraycopy(array, 0, newArray, 0, size);
+		return newArray;
+	}
+}
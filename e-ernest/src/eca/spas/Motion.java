@@ -0,0 +1,143 @@
+package eca.spas;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.vecmath.Point3f;
+
+/**
+ * The motion of spatial memory relative to Ernest: the ticks (steps of fading) and the transformations that spatial memory went through.
+ * The places of spatial memory are not moved at each step. Each place remembers the last step applied to it
+ * and replays the following steps when it is read (see PlaceImpl).
+ * The steps are kept until all the places of spatial memory have replayed them.
+ * The motion also accumulates the inverse pose of Ernest to locate egocentric positions in the fixed reference frame of spatial memory.
+ * @author Olivier
+ */
+class Motion
+{
+	/** The steps that some places have not replayed yet: a transformation, or null for a step of fading */
+	private List<Transform2D> steps = new ArrayList<Transform2D>();
+	/** The number of the first step of the list */
+	private int firstStep = 0;
+	/** The number of places waiting for each step of the list (the last count is for the places that are up to date) */
+	private int[] nbWaiting = new int[16];
+	/** The number of ticks */
+	private int nbTicks = 0;
+
+	/** The transformation from the egocentric reference frame to the fixed reference frame */
+	private Transform2D inversePose = Transform2D.IDENTITY;
+
+	/**
+	 * @return The number of the next step.
+	 */
+	int getStep()
+	{
+		return firstStep + steps.size();
+	}
+
+	/**
+	 * @return The number of ticks, that is the clock of spatial memory.
+	 */
+	int getNbTicks()
+	{
+		return nbTicks;
+	}
+
+	/**
+	 * Add a tick: a step of fading (applied to the places that fade).
+	 */
+	void tick()
+	{
+		nbTicks++;
+		add(null);
+	}
+
+	/**
+	 * Add a transformation step.
+	 * @param transform The transformation of spatial memory.
+	 */
+	void transform(Transform2D transform)
+	{
+		add(transform);
+		inversePose = inversePose.mul(transform.invert());
+	}
+
+	/**
+	 * @param position A position in the egocentric reference frame, replaced by the same position in the fixed reference frame.
+	 */
+	void toFixedFrame(Point3f position)
+	{
+		inversePose.transform(position);
+	}
+
+	/**
+	 * Register a place that is up to date.
+	 * @return The step of the place.
+	 */
+	int attach()
+	{
+		nbWaiting[steps.size()]++;
+		return getStep();
+	}
+
+	/**
+	 * Unregister a place.
+	 * @param step The step of the place.
+	 */
+	void detach(int step)
+	{
+		nbWaiting[step - firstStep]--;
+		prune();
+	}
+
+	/**
+	 * Replay the steps that a place is waiting for.
+	 * @param place The place.
+	 * @param step The step of the place.
+	 * @return The new step of the place.
+	 */
+	int replay(PlaceImpl place, int step)
+	{
+		for (int i = step - firstStep; i < steps.size(); i++)
+		{
+			Transform2D transform = steps.get(i);
+			if (transform == null)
+				place.fadeStep();
+			else
+				place.transformStep(transform);
+		}
+		nbWaiting[step - firstStep]--;
+		nbWaiting[steps.size()]++;
+		prune();
+		return getStep();
+	}
+
+	private void add(Transform2D step)
+	{
+		steps.add(step);
+		if (steps.size() + 1 > nbWaiting.length)
+		{
+			int[] newNbWaiting = new int[nbWaiting.length * 2];
+			System.arraycopy(nbWaiting, 0, newNbWaiting, 0, nbWaiting.length);
+			nbWaiting = newNbWaiting;
+		}
+		prune();
+	}
+
+	/**
+	 * Forget the first steps that no place is waiting for.
+	 */
+	private void prune()
+	{
+		int n = 0;
+		while (n < steps.size() && nbWaiting[n] == 0)
+			n++;
+		if (n > 0)
+		{
+			steps.subList(0, n).clear();
+			System.arraycopy(nbWaiting, n, nbWaiting, 0, steps.size() + 1);
+			for (int i = steps.size() + 1; i < steps.size() + 1 + n; i++)
+				nbWaiting[i] = 0;
+			firstStep += n;
+		}
+	}
+}
@@ -1,6 +1,5 @@
 package eca.spas;
 
-import javax.media.j3d.Transform3D;
 import javax.vecmath.Point3f;
 import javax.vecmath.Vector3f;
 
@@ -15,7 +14,7 @@ public interface Place extends Cloneable{
 	/**
 	 * @param transform The transformation applied to spatial memory.
 	 */
-	public void transform(Transform3D transform);
+	public void transform(Transform2D transform);
 
 	/**
 	 * @return A clone of this place
@@ -76,4 +75,14 @@ public interface Place extends Cloneable{
 	
 	public void fade();
 	
+	/**
+	 * @param fading true if this place fades at each tick of the spatial memory that contains it.
+	 */
+	public void setFading(boolean fading);
+	
+	/**
+	 * @return The number of ticks of spatial memory that this place went through.
+	 */
+	public int getNbTicks();
+	
 }
@@ -1,6 +1,5 @@
 package eca.spas;
 
-import javax.media.j3d.Transform3D;
 import javax.vecmath.Point3f;
 import javax.vecmath.Vector3f;
 import utils.ErnestUtils;
@@ -9,6 +8,10 @@ import eca.construct.egomem.AreaImpl;
 
 /**
  * A place in egocentric spatial memory where an ActInstance or a PhenomenonInstance is located.
+ * While the place is in spatial memory, it follows the motion of spatial memory lazily:
+ * the transformations and the fading are applied when the place is read.
+ * In an ArraySpatialMemory, the place is a view of its slot in the arrays of the spatial memory instead:
+ * the accessors read and write the arrays, and getPosition() and getOrientation() copy the coordinates they return.
  * @author Olivier
  */
 public class PlaceImpl implements Place {
@@ -16,6 +19,21 @@ public class PlaceImpl implements Place {
 	private Point3f position = new Point3f();
 	private Vector3f orientation = new Vector3f(1,0,0);	
 	
+	/** The motion of the spatial memory that contains this place (null if none) */
+	private Motion motion = null;
+	/** The array spatial memory that holds the coordinates of this place (null if none) */
+	private ArraySpatialMemory arrays = null;
+	/** The slot of this place in the arrays */
+	private int index;
+	/** The next step of the motion to apply to this place */
+	private int step;
+	/** True if this place fades in spatial memory */
+	private boolean fading = false;
+	/** The number of ticks this place went through before it was added in spatial memory, or until it was removed */
+	private int nbTicks = 0;
+	/** The clock of spatial memory when this place was added */
+	private int firstTick;
+	
 	/**
 	 * Create a new place 
 	 * (The provided position is cloned so the place can be moved without changing the provided position).
@@ -31,38 +49,129 @@ public class PlaceImpl implements Place {
 	 * @return The cloned place
 	 */
 	public PlaceImpl clone(){
+		Point3f position = getPosition();
+		Vector3f orientation = getOrientation();
 		PlaceImpl clonePlace = null;
 		try {
 			clonePlace = (PlaceImpl) super.clone();
 		} catch(CloneNotSupportedException cnse) {
 			cnse.printStackTrace(System.err);
 		}
+		// The clone is not in spatial memory
+		clonePlace.nbTicks = getNbTicks();
+		clonePlace.motion = null;
+		clonePlace.arrays = null;
 
 		// We must clone the objects because they are passed by reference by default
-		clonePlace.setPosition(this.position);
-		clonePlace.setOrientation(this.orientation);
+		clonePlace.setPosition(position);
+		clonePlace.setOrientation(orientation);
 
 		return clonePlace;
 	}
 	
-	public void transform(Transform3D transform) {
+	/**
+	 * Follow the motion of a spatial memory.
+	 * @param motion The motion of the spatial memory in which this place is added.
+	 */
+	void attach(Motion motion) {
+		if (this.motion == motion)
+			return;
+		detach();
+		this.motion = motion;
+		this.step = motion.attach();
+		this.firstTick = motion.getNbTicks();
+	}
+	
+	/**
+	 * Become a view of a slot of an array spatial memory.
+	 * @param arrays The array spatial memory in which this place is added.
+	 * @param index The slot of this place.
+	 */
+	void attach(ArraySpatialMemory arrays, int index) {
+		if (this.arrays != arrays){
+			detach();
+			this.arrays = arrays;
+			this.firstTick = arrays.getNbTicks();
+		}
+		this.index = index;
+	}
+	
+	/**
+	 * @param arrays An array spatial memory.
+	 * @param index A slot.
+	 * @return true if this place is the view of this slot.
+	 */
+	boolean isViewOf(ArraySpatialMemory arrays, int index) {
+		return this.arrays == arrays && this.index == index;
+	}
+	
+	/**
+	 * Stop following the motion of spatial memory (when this place is removed from spatial memory).
+	 */
+	void detach() {
+		if (this.motion != null){
+			update();
+			this.nbTicks = getNbTicks();
+			this.motion.detach(this.step);
+			this.motion = null;
+		}
+		if (this.arrays != null){
+			getPosition();
+			getOrientation();
+			this.nbTicks = getNbTicks();
+			this.arrays = null;
+		}
+	}
+	
+	/**
+	 * Apply the steps of the motion that this place has not followed yet.
+	 */
+	private void update() {
+		if (this.motion != null && this.step < this.motion.getStep())
+			this.step = this.motion.replay(this, this.step);
+	}
+	
+	void transformStep(Transform2D transform) {
 		transform.transform(this.position);
 		transform.transform(this.orientation);
 	}
+	
+	void fadeStep() {
+		if (this.fading)
+			this.position = new Point3f(this.position.x * 1.1f, this.position.y * 1.1f, 0f);
+	}
+	
+	public void transform(Transform2D transform) {
+		if (this.arrays != null)
+			this.arrays.transform(this.index, transform);
+		else {
+			update();
+			transformStep(transform);
+		}
+	}
 
 	public void setPosition(Point3f position) {
+		update();
 		// Create a new instance of the vector so it can be used to clone this place.
 		this.position = new Point3f(position);
+		if (this.arrays != null)
+			this.arrays.writePosition(this.index, position);
 	}
 
 	public Point3f getPosition() {
+		update();
+		if (this.arrays != null)
+			this.arrays.readPosition(this.index, this.position);
 		return this.position;
 	}
 
 	public boolean isInCell(Point3f position) {
+		update();
+		float x = this.arrays != null ? this.arrays.getX(this.index) : this.position.x;
+		float y = this.arrays != null ? this.arrays.getY(this.index) : this.position.y;
 		boolean ret;
 		// Is in the same cell.
-		ret = (Math.round(this.position.x) == Math.round(position.x)) && (Math.round(this.position.y) == Math.round(position.y)); 
+		ret = (Math.round(x) == Math.round(position.x)) && (Math.round(y) == Math.round(position.y)); 
 		
 		// Is in the same cell in egocentric polar referential.
 		
@@ -80,32 +189,41 @@ public class PlaceImpl implements Place {
 	}
 
 	public void setOrientation(Vector3f orientation) {
+		update();
 		this.orientation = new Vector3f(orientation);
+		if (this.arrays != null)
+			this.arrays.writeOrientation(this.index, orientation);
 	}
 
 	public Vector3f getOrientation() {
+		update();
+		if (this.arrays != null)
+			this.arrays.readOrientation(this.index, this.orientation);
 		return this.orientation;
 	}
 
 	public float getDirection() {
-		return ErnestUtils.polarAngle(new Vector3f(this.position));
+		return ErnestUtils.polarAngle(new Vector3f(getPosition()));
 	}
 
 	public float getDistance() {
-		return this.position.distance(new Point3f());
+		return getPosition().distance(new Point3f());
 	}
 
 	public float getOrientationAngle() {
-		return ErnestUtils.polarAngle(this.orientation);
+		return ErnestUtils.polarAngle(getOrientation());
 	}
 
 	public void normalize(float scale) {
-		float d = this.position.distance(new Point3f());
-		if (d > 0) this.position.scale(scale / d);
+		Point3f position = getPosition();
+		float d = position.distance(new Point3f());
+		if (d > 0) position.scale(scale / d);
+		if (this.arrays != null)
+			this.arrays.writePosition(this.index, position);
 	}
 
 	public Area getArea() {
-		return AreaImpl.createOrGet(position);
+		return AreaImpl.createOrGet(getPosition());
 	}
 	
 	/**
@@ -123,13 +241,39 @@ public class PlaceImpl implements Place {
 		else
 		{
 			Place other = (Place)o;
-			ret  = this.position.epsilonEquals(other.getPosition(), .1f);
+			ret  = getPosition().epsilonEquals(other.getPosition(), .1f);
 		}		
 		return ret;
 	}
 
+	/**
+	 * Move this place away from Ernest.
+	 * In spatial memory, the fading places fade at each tick of spatial memory instead.
+	 */
 	public void fade() {
-		this.setPosition(new Point3f(this.position.x * 1.1f, this.position.y * 1.1f, 0f));
+		if (this.motion == null && this.arrays == null)
+			this.setPosition(new Point3f(this.position.x * 1.1f, this.position.y * 1.1f, 0f));
+	}
+
+	public void setFading(boolean fading) {
+		this.fading = fading;
+		if (this.arrays != null)
+			this.arrays.setFading(this.index, fading);
+	}
+
+	/**
+	 * @return true if this place fades in spatial memory.
+	 */
+	boolean isFading() {
+		return this.fading;
+	}
+
+	public int getNbTicks() {
+		if (this.motion != null)
+			return this.nbTicks + this.motion.getNbTicks() - this.firstTick;
+		if (this.arrays != null)
+			return this.nbTicks + this.arrays.getNbTicks() - this.firstTick;
+		return this.nbTicks;
 	}
 
 }
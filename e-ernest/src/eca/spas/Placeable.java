@@ -1,6 +1,5 @@
 package eca.spas;
 
-import javax.media.j3d.Transform3D;
 import javax.vecmath.Point3f;
 
 import eca.construct.egomem.Area;
@@ -29,7 +28,7 @@ public interface Placeable extends Cloneable {
 	/**
 	 * @param transform The transformation to move this object in spatial memory.
 	 */
-	public void transform(Transform3D transform);
+	public void transform(Transform2D transform);
 
 	/**
 	 * @return The area of this object
@@ -3,7 +3,9 @@ package eca.spas;
 
 import java.util.ArrayList;
 import java.util.List;
+import javax.vecmath.Point3f;
 import tracing.ITracer;
+import eca.AgentMemory;
 import eca.ActInstance;
 import eca.Primitive;
 import eca.construct.egomem.Area;
@@ -25,9 +27,35 @@ public class SpasImpl implements Spas
 	private ITracer m_tracer = null; 
 	
 	/** Ernest's local space memory  */
-	private SpatialMemory spacialMemory = new SpatialMemoryImpl();
+	private SpatialMemory spacialMemory;
 	
-	private PhenomenonInstance focusPhenomenonInstance = PhenomenonInstance.EMPTY;
+	/** The memory of the agent */
+	private AgentMemory memory;
+	
+	/** The empty phenomenon instance (its phenomenon type belongs to the agent's memory) */
+	private PhenomenonInstance emptyPhenomenonInstance;
+	
+	private PhenomenonInstance focusPhenomenonInstance;
+	
+	/**
+	 * @param memory The memory of the agent
+	 */
+	public SpasImpl(AgentMemory memory)
+	{
+		this(memory, new SpatialMemoryImpl());
+	}
+	
+	/**
+	 * @param memory The memory of the agent
+	 * @param spatialMemory The local space memory (for example an ArraySpatialMemory for large perceptions)
+	 */
+	public SpasImpl(AgentMemory memory, SpatialMemory spatialMemory)
+	{
+		this.memory = memory;
+		this.spacialMemory = spatialMemory;
+		this.emptyPhenomenonInstance = new PhenomenonInstanceImpl(getEmptyPhenomenonType(), new Point3f());
+		this.focusPhenomenonInstance = this.emptyPhenomenonInstance;
+	}
 	
 	public void setTracer(ITracer tracer) {
 		m_tracer = tracer;
@@ -41,8 +69,9 @@ public class SpasImpl implements Spas
 	public void track(Enaction enaction) 
 	{
 
+		// The construct element is only built if the tracer keeps it.
 		Object pie = null;
-		if (m_tracer != null)
+		if (m_tracer != null && m_tracer.accepts("construct"))
 			pie = m_tracer.addEventElement("construct", true);
 
 		//for (ActInstance p : enaction.getEnactedPlaces())
@@ -51,7 +80,7 @@ public class SpasImpl implements Spas
 		// Update spatial memory
 		
 		this.spacialMemory.tick();
-		this.spacialMemory.transform(enaction.getTransform3D());
+		this.spacialMemory.transform(enaction.getTransform());
 		this.spacialMemory.forgetOldPlaces();		
 		for (ActInstance actInstance : enaction.getEnactedPlaces()){
 			this.spacialMemory.addPlaceable(actInstance);
@@ -63,9 +92,9 @@ public class SpasImpl implements Spas
 				PhenomenonInstance phenomenonInstance = this.spacialMemory.getPhenomenonInstance(actInstance.getPosition());
 				if (phenomenonInstance == null){
 					// create a new phenomenon type with this act
-					PhenomenonType  phenomenonType = PhenomenonTypeImpl.evoke(actInstance.getAspect());
+					PhenomenonType  phenomenonType = PhenomenonTypeImpl.evoke(memory, actInstance.getAspect());
 					if (phenomenonType == null){
-						phenomenonType = PhenomenonTypeImpl.createNew();
+						phenomenonType = PhenomenonTypeImpl.createNew(memory);
 						phenomenonType.setAspect(actInstance.getAspect());
 						phenomenonType.addPrimitive(actInstance.getPrimitive());
 						phenomenonInstance = new PhenomenonInstanceImpl(phenomenonType, actInstance.getPosition());
@@ -76,7 +105,7 @@ public class SpasImpl implements Spas
 						phenomenonInstance = new PhenomenonInstanceImpl(phenomenonType, actInstance.getPosition());
 						this.spacialMemory.addPlaceable(phenomenonInstance);
 					}
-					if (m_tracer != null ){
+					if (pie != null){
 						phenomenonInstance.trace(m_tracer, pie);
 						m_tracer.addSubelement(pie, "create", actInstance.getDisplayLabel());
 					}
@@ -95,7 +124,7 @@ public class SpasImpl implements Spas
 //					}
 //					else{
 						phenomenonType.addPrimitive(actInstance.getPrimitive());
-						if (m_tracer != null ){
+						if (pie != null){
 							phenomenonInstance.trace(m_tracer, pie);
 							m_tracer.addSubelement(pie, "add", actInstance.getDisplayLabel());
 						}
@@ -109,7 +138,7 @@ public class SpasImpl implements Spas
 		
 		// The focus phenomenon is the one that has the highest attractiveness or that is the closest or with which there is an interaction
 		
-		PhenomenonInstance phenomenonInstance = PhenomenonInstance.EMPTY;
+		PhenomenonInstance phenomenonInstance = this.emptyPhenomenonInstance;
 		if (enaction.getSalientActInstance() != null){
 			PhenomenonInstance salientPhenomenonInstance = this.spacialMemory.getPhenomenonInstance(enaction.getSalientActInstance().getPosition());
 			if (salientPhenomenonInstance != null)
@@ -118,19 +147,19 @@ public class SpasImpl implements Spas
 		float distance = 10000;
 		int attractiveness = -200;
 		for (PhenomenonInstance p : this.spacialMemory.getPhenomenonInstances())
-			if (p.getPhenomenonType().getAttractiveness() > attractiveness && p.getClock() == 0){
+			if (p.getClock() == 0 && p.getPhenomenonType().getAttractiveness() > attractiveness){
 				phenomenonInstance = p;
 				distance = phenomenonInstance.getDistance();
 				attractiveness = phenomenonInstance.getPhenomenonType().getAttractiveness();
 			}
-			else if (p.getDistance() < distance  && p.getClock() == 0){
+			else if (p.getClock() == 0 && p.getDistance() < distance){
 				phenomenonInstance = p;
 				distance = phenomenonInstance.getDistance();
 				attractiveness = phenomenonInstance.getPhenomenonType().getAttractiveness();
 			}
 		if (!this.focusPhenomenonInstance.equals(phenomenonInstance)){
 			this.focusPhenomenonInstance = phenomenonInstance;
-			if (m_tracer != null ){
+			if (pie != null){
 				phenomenonInstance.trace(m_tracer, pie);
 				m_tracer.addSubelement(pie, "shift", "");
 			}			
@@ -166,6 +195,10 @@ public class SpasImpl implements Spas
 		return this.focusPhenomenonInstance;
 	}
 	
+	private PhenomenonType getEmptyPhenomenonType(){
+		return PhenomenonTypeImpl.createOrGet(memory, PhenomenonType.EMPTY.getLabel());
+	}
+	
 	private void mergePhenomenonTypes(ActInstance salientPlace){
 		
 		if (salientPlace != null){
@@ -177,7 +210,7 @@ public class SpasImpl implements Spas
 			Primitive enactedPrimitive = salientPlace.getPrimitive();
 			Area enactedArea = salientPlace.getArea();
 			
-			PhenomenonType actualPhenomenonType = PhenomenonTypeImpl.evoke(salientPlace.getPrimitive());
+			PhenomenonType actualPhenomenonType = PhenomenonTypeImpl.evoke(memory, salientPlace.getPrimitive());
 			actualPhenomenonType.setAspect(salientPlace.getAspect());
 	
 			PhenomenonInstance focusPhenomenonInstance = this.getFocusPhenomenonInstance();
@@ -188,18 +221,18 @@ public class SpasImpl implements Spas
 			Area projectedArea = focusPhenomenonInstance.getArea();
 	
 			if (salientPlace.getModality() == ActInstance.MODALITY_MOVE){
-				PhenomenonTypeImpl.merge(enactedPrimitive, PhenomenonTypeImpl.EMPTY);
-				focusPhenomenonInstance.setPosition(salientPlace.getPosition());
-				if (!focusPhenomenonInstance.getPhenomenonType().equals(PhenomenonTypeImpl.EMPTY)){
-					focusPhenomenonInstance.setPhenomenonType(PhenomenonTypeImpl.EMPTY);
+				PhenomenonTypeImpl.merge(memory, enactedPrimitive, getEmptyPhenomenonType());
+				this.spacialMemory.move(focusPhenomenonInstance, salientPlace.getPosition());
+				if (!focusPhenomenonInstance.getPhenomenonType().equals(getEmptyPhenomenonType())){
+					focusPhenomenonInstance.setPhenomenonType(getEmptyPhenomenonType());
 					if (m_tracer != null ){
-						if (!actualPhenomenonType.equals(PhenomenonTypeImpl.EMPTY)){
-							PhenomenonTypeImpl.EMPTY.trace(m_tracer, phenomenonInstElemnt);
+						if (!actualPhenomenonType.equals(getEmptyPhenomenonType())){
+							getEmptyPhenomenonType().trace(m_tracer, phenomenonInstElemnt);
 							m_tracer.addSubelement(phenomenonInstElemnt, "merge", actualPhenomenonType.getLabel());
 							m_tracer.addSubelement(phenomenonInstElemnt, "area", enactedArea.getLabel());
 						}
 						else{
-							PhenomenonTypeImpl.EMPTY.trace(m_tracer, phenomenonInstElemnt);
+							getEmptyPhenomenonType().trace(m_tracer, phenomenonInstElemnt);
 							m_tracer.addSubelement(phenomenonInstElemnt, "shift", actualPhenomenonType.getLabel());
 							m_tracer.addSubelement(phenomenonInstElemnt, "area", enactedArea.getLabel());
 						}
@@ -209,9 +242,9 @@ public class SpasImpl implements Spas
 			// Follow the phenomenon instance
 			else if (enactedArea.equals(projectedArea)){
 				PhenomenonType previousPhenomenonType = focusPhenomenonInstance.getPhenomenonType();
-				focusPhenomenonInstance.setPosition(salientPlace.getPosition()); 
+				this.spacialMemory.move(focusPhenomenonInstance, salientPlace.getPosition()); 
 				if (!previousPhenomenonType.equals(actualPhenomenonType)){
-					PhenomenonTypeImpl.merge(enactedPrimitive, previousPhenomenonType);
+					PhenomenonTypeImpl.merge(memory, enactedPrimitive, previousPhenomenonType);
 					//if (salientPlace.getModality() == ActInstance.MODALITY_VISION)
 						previousPhenomenonType.setAspect(salientPlace.getAspect());
 					if (m_tracer != null){
@@ -225,7 +258,7 @@ public class SpasImpl implements Spas
 			// Shift to another phenomenon instance
 			else {
 				focusPhenomenonInstance.setPhenomenonType(actualPhenomenonType);
-				focusPhenomenonInstance.setPosition(salientPlace.getPosition());
+				this.spacialMemory.move(focusPhenomenonInstance, salientPlace.getPosition());
 				if (m_tracer != null){
 					actualPhenomenonType.trace(m_tracer, phenomenonInstElemnt);
 					m_tracer.addSubelement(phenomenonInstElemnt, "shift", "");
@@ -2,7 +2,6 @@ package eca.spas;
 
 import java.util.ArrayList;
 import java.util.List;
-import javax.media.j3d.Transform3D;
 import javax.vecmath.Point3f;
 
 import eca.ActInstance;
@@ -33,14 +32,21 @@ public interface SpatialMemory
 	//public ArrayList<Placeable> clonePlaceList();
 	
 	/**
-	 * @return The list of Placeable objects.
+	 * Move a placeable of this spatial memory.
+	 * @param placeable The placeable.
+	 * @param position The new position of the placeable.
+	 */
+	public void move(Placeable placeable, Point3f position);
+	
+	/**
+	 * @return The list of Placeable objects (not to be modified).
 	 */
 	public List<Placeable> getPlaceables();
 	
 	/**
 	 * @param transform The transformation
 	 */
-	public void transform(Transform3D transform);
+	public void transform(Transform2D transform);
 	
 	/**
 	 * Remove places that are older than the decay laps
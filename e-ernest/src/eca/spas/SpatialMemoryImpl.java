@@ -1,10 +1,12 @@
 package eca.spas;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-import javax.media.j3d.Transform3D;
+import java.util.Map;
 import javax.vecmath.Point3f;
+import utils.LongIntMap;
 import eca.ActInstance;
 import eca.construct.egomem.PhenomenonInstance;
 import eca.construct.egomem.PhenomenonInstanceImpl;
@@ -39,8 +41,24 @@ public class SpatialMemoryImpl implements SpatialMemory, Cloneable
 	/** The duration of persistence in local space memory. */
 	public static int PERSISTENCE_DURATION = 7;//50;
 	
-	/** The Local space structure. */
-	private List<Placeable> placeables = new ArrayList<Placeable>();
+	/** The Local space structure: the first and last entries of the list of placeables, in order of addition. */
+	private Entry first = null;
+	private Entry last = null;
+	/** The number of entries added, to order them */
+	private int nbEntries = 0;
+	
+	/** The motion of spatial memory, followed lazily by the places of the placeables. Its ticks are the clock of spatial memory. */
+	private Motion motion = new Motion();
+	
+	/** The entries bucketed by the tick at which the clock of their placeable was 0, in a ring of PERSISTENCE_DURATION + 1 slots */
+	private Entry[] slots = new Entry[PERSISTENCE_DURATION + 1];
+	/** The last tick whose bucket has expired */
+	private int lastExpiredTick = -1;
+	
+	/** The phenomenon instances indexed by the cell of their position in the fixed reference frame of the motion */
+	private Map<Long, List<Entry>> grid = new HashMap<Long, List<Entry>>();
+	/** The last entry of each phenomenon instance */
+	private Map<Placeable, Entry> gridEntries = new IdentityHashMap<Placeable, Entry>();
 	
 	/**
 	 * Clone spatial memory to perform simulations
@@ -57,14 +75,42 @@ public class SpatialMemoryImpl implements SpatialMemory, Cloneable
 //		return clonePlaces;
 //	}
 
+	/**
+	 * The clocks of the placeables are derived from the clock of spatial memory (see Place.getNbTicks()),
+	 * and the fading places fade when they are read (see Place.setFading()).
+	 */
 	public void tick()
 	{
-		for (Placeable p : placeables)
-			p.incClock();
+		motion.tick();
 	}
 
 	public void addPlaceable(Placeable placeable){
-		placeables.add(placeable);
+		((PlaceImpl)placeable.getPlace()).attach(motion);
+		Entry entry = new Entry(placeable, nbEntries++);
+		entry.previous = last;
+		if (last == null)
+			first = entry;
+		else
+			last.next = entry;
+		last = entry;
+		bucket(entry);
+		if (placeable instanceof PhenomenonInstance){
+			Entry previousEntry = gridEntries.put(placeable, entry);
+			if (previousEntry != null)
+				unfile(previousEntry);
+			entry.cell = fixedCellKey(placeable.getPosition());
+			file(entry);
+		}
+	}
+	
+	public void move(Placeable placeable, Point3f position){
+		placeable.setPosition(position);
+		Entry entry = gridEntries.get(placeable);
+		if (entry != null){
+			unfile(entry);
+			entry.cell = fixedCellKey(placeable.getPosition());
+			file(entry);
+		}
 	}
 	
 //	public void addActInstance(ActInstance actInstance){
@@ -84,10 +130,12 @@ public class SpatialMemoryImpl implements SpatialMemory, Cloneable
 //		}
 //	}
 	
-	public void transform(Transform3D transform)
+	/**
+	 * The placeables are transformed when they are read.
+	 */
+	public void transform(Transform2D transform)
 	{
-		for (Placeable p : placeables)
-			p.transform(transform);
+		motion.transform(transform);
 	}
 	
 	/**
@@ -119,15 +167,32 @@ public class SpatialMemoryImpl implements SpatialMemory, Cloneable
 	
 	/**
 	 * Clear all the places older than PERSISTENCE_DURATION.
+	 * Only the buckets of the ticks that have just expired are visited.
+	 * Their placeables whose clock has been reset since they were bucketed are moved to the bucket of their new tick.
 	 */
 	public void forgetOldPlaces()
 	{
-		for (Iterator<Placeable> it = placeables.iterator(); it.hasNext();)
+		int lastTick = motion.getNbTicks() - PERSISTENCE_DURATION - 1;
+		int nbSlots = Math.min(lastTick - lastExpiredTick, slots.length);
+		for (int tick = lastTick - nbSlots + 1; tick <= lastTick; tick++)
 		{
-			Placeable p = it.next();
-			if (p.getClock() > PERSISTENCE_DURATION )//|| p.getPosition().x < -.1) 
-				it.remove();
+			int slot = slot(tick);
+			Entry entry = slots[slot];
+			slots[slot] = null;
+			while (entry != null)
+			{
+				Entry next = entry.nextInSlot;
+				if (!entry.removed)
+				{
+					if (entry.placeable.getClock() > PERSISTENCE_DURATION )//|| p.getPosition().x < -.1) 
+						remove(entry);
+					else
+						bucket(entry);
+				}
+				entry = next;
+			}
 		}
+		lastExpiredTick = Math.max(lastExpiredTick, lastTick);
 	}
 		
 //	public void trace(ITracer tracer)
@@ -148,33 +213,132 @@ public class SpatialMemoryImpl implements SpatialMemory, Cloneable
 //	}
 
 	public List<Placeable> getPlaceables() {
-		return this.placeables;
+		List<Placeable> placeables = new ArrayList<Placeable>();
+		for (Entry entry = first; entry != null; entry = entry.next)
+			placeables.add(entry.placeable);
+		return placeables;
 	}
 	
 	public List<PhenomenonInstance> getPhenomenonInstances() {
 		List<PhenomenonInstance> phenomenonInstances = new ArrayList<PhenomenonInstance>();
-		for (Placeable placeable : this.placeables)
-			if (placeable instanceof PhenomenonInstance)
-				phenomenonInstances.add((PhenomenonInstance)placeable);
+		for (Entry entry = first; entry != null; entry = entry.next)
+			if (entry.placeable instanceof PhenomenonInstance)
+				phenomenonInstances.add((PhenomenonInstance)entry.placeable);
 		return phenomenonInstances;
 	}
 	
 	public PhenomenonInstance getPhenomenonInstance(Point3f position){
-		PhenomenonInstance phenomenonInstance = null;
-		for (Placeable placeable : this.placeables)
-			if (placeable instanceof PhenomenonInstance)
-				if (placeable.isInCell(position))
-					phenomenonInstance = (PhenomenonInstance)placeable;
+		// The phenomenon instances in the cell of this position are within sqrt(2) of this position.
+		// Search them in the cells of the fixed reference frame around this position.
+		Point3f fixedPosition = new Point3f(position);
+		motion.toFixedFrame(fixedPosition);
+		int x = Math.round(fixedPosition.x);
+		int y = Math.round(fixedPosition.y);
+		
+		// The last phenomenon instance in the cell of this position
+		Entry last = null;
+		for (int i = x - 2; i <= x + 2; i++)
+			for (int j = y - 2; j <= y + 2; j++){
+				List<Entry> cell = grid.get(LongIntMap.key(i, j));
+				if (cell != null)
+					for (Entry entry : cell)
+						if ((last == null || entry.order > last.order) && entry.placeable.isInCell(position))
+							last = entry;
+			}
 		
-		return phenomenonInstance;
+		return last == null ? null : (PhenomenonInstance)last.placeable;
 	}
 
 	public void clearPhenomenonInstanceFront() {
-		for (Iterator<Placeable> it = placeables.iterator(); it.hasNext();){
-			Placeable placeable = it.next();
+		for (Entry entry = first; entry != null; entry = entry.next){
+			Placeable placeable = entry.placeable;
 			if (placeable instanceof PhenomenonInstance)
 				if (placeable.getPlace().getPosition().x > 0)
-					it.remove();					
+					remove(entry);
+		}
+	}
+	
+	/**
+	 * @param position A position in the egocentric reference frame
+	 * @return The key of the cell of this position in the fixed reference frame.
+	 */
+	private long fixedCellKey(Point3f position){
+		Point3f fixedPosition = new Point3f(position);
+		motion.toFixedFrame(fixedPosition);
+		return LongIntMap.key(Math.round(fixedPosition.x), Math.round(fixedPosition.y));
+	}
+	
+	/**
+	 * Remove an entry from the list of placeables and from the grid, and stop following its placeable.
+	 * The entry is dropped from its bucket when the bucket expires.
+	 */
+	private void remove(Entry entry){
+		entry.removed = true;
+		if (entry.previous == null)
+			first = entry.next;
+		else
+			entry.previous.next = entry.next;
+		if (entry.next == null)
+			last = entry.previous;
+		else
+			entry.next.previous = entry.previous;
+		((PlaceImpl)entry.placeable.getPlace()).detach();
+		if (gridEntries.get(entry.placeable) == entry){
+			gridEntries.remove(entry.placeable);
+			unfile(entry);
+		}
+	}
+	
+	/**
+	 * Put an entry in the bucket of the tick at which the clock of its placeable was 0.
+	 */
+	private void bucket(Entry entry){
+		int tick = Math.max(motion.getNbTicks() - entry.placeable.getClock(), lastExpiredTick + 1);
+		int slot = slot(tick);
+		entry.nextInSlot = slots[slot];
+		slots[slot] = entry;
+	}
+	
+	private int slot(int tick){
+		return ((tick % slots.length) + slots.length) % slots.length;
+	}
+	
+	private void file(Entry entry){
+		List<Entry> cell = grid.get(entry.cell);
+		if (cell == null){
+			cell = new ArrayList<Entry>(2);
+			grid.put(entry.cell, cell);
+		}
+		cell.add(entry);
+	}
+	
+	private void unfile(Entry entry){
+		List<Entry> cell = grid.get(entry.cell);
+		cell.remove(entry);
+		if (cell.isEmpty())
+			grid.remove(entry.cell);
+	}
+	
+	/**
+	 * A placeable in spatial memory.
+	 */
+	private static class Entry
+	{
+		final Placeable placeable;
+		/** The order of addition */
+		final int order;
+		/** The previous and next entries in the list of placeables */
+		Entry previous;
+		Entry next;
+		/** The next entry in the same bucket */
+		Entry nextInSlot;
+		boolean removed = false;
+		/** The cell of a phenomenon instance in the grid */
+		long cell;
+		
+		Entry(Placeable placeable, int order){
+			this.placeable = placeable;
+			this.order = order;
 		}
 	}
 	
@@ -0,0 +1,175 @@
+package eca.spas;
+
+import javax.vecmath.Point3f;
+import javax.vecmath.Vector3f;
+
+/**
+ * A rigid transformation in the horizontal plane: a rotation around the z axis followed by a translation.
+ * Transform2D objects are immutable, so they can be shared without being copied.
+ * The z coordinate is left unchanged.
+ * @author Olivier
+ */
+public final class Transform2D
+{
+	/** The identity transformation */
+	public static final Transform2D IDENTITY = new Transform2D(1, 0, 0, 0);
+
+	private final double cos;
+	private final double sin;
+	private final double x;
+	private final double y;
+
+	/**
+	 * @param angle The angle of rotation around the z axis.
+	 * @param x The translation along the x axis.
+	 * @param y The translation along the y axis.
+	 */
+	public Transform2D(double angle, double x, double y)
+	{
+		this(Math.cos(angle), Math.sin(angle), x, y);
+	}
+
+	/**
+	 * @param cos The cosine of the angle of rotation.
+	 * @param sin The sine of the angle of rotation.
+	 * @param x The translation along the x axis.
+	 * @param y The translation along the y axis.
+	 */
+	public Transform2D(double cos, double sin, double x, double y)
+	{
+		this.cos = cos;
+		this.sin = sin;
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * @return The cosine of the angle of rotation.
+	 */
+	public double getCos()
+	{
+		return cos;
+	}
+
+	/**
+	 * @return The sine of the angle of rotation.
+	 */
+	public double getSin()
+	{
+		return sin;
+	}
+
+	/**
+	 * @return The angle of rotation.
+	 */
+	public float getAngle()
+	{
+		if (sin == 0)
+			return 0;
+		else
+			return (float)Math.atan2(sin, cos);
+	}
+
+	/**
+	 * @return The translation along the x axis.
+	 */
+	public double getX()
+	{
+		return x;
+	}
+
+	/**
+	 * @return The translation along the y axis.
+	 */
+	public double getY()
+	{
+		return y;
+	}
+
+	/**
+	 * @param point The point to transform (modified).
+	 */
+	public void transform(Point3f point)
+	{
+		float px = point.x;
+		point.x = (float)(cos * px - sin * point.y + x);
+		point.y = (float)(sin * px + cos * point.y + y);
+	}
+
+	/**
+	 * @param vector The vector to rotate (modified).
+	 */
+	public void transform(Vector3f vector)
+	{
+		float vx = vector.x;
+		vector.x = (float)(cos * vx - sin * vector.y);
+		vector.y = (float)(sin * vx + cos * vector.y);
+	}
+
+	/**
+	 * @param transform A transformation.
+	 * @return The transformation that applies transform, then this transformation.
+	 */
+	public Transform2D mul(Transform2D transform)
+	{
+		return new Transform2D(
+				cos * transform.cos - sin * transform.sin,
+				sin * transform.cos + cos * transform.sin,
+				cos * transform.x - sin * transform.y + x,
+				sin * transform.x + cos * transform.y + y);
+	}
+
+	/**
+	 * @return The inverse transformation.
+	 */
+	public Transform2D invert()
+	{
+		return new Transform2D(cos, -sin, -(cos * x + sin * y), -(-sin * x + cos * y));
+	}
+
+	/**
+	 * @param transform A transformation.
+	 * @param epsilon The tolerance.
+	 * @return true if the rotation and translation terms of both transformations differ by no more than epsilon.
+	 */
+	public boolean epsilonEquals(Transform2D transform, double epsilon)
+	{
+		return Math.abs(cos - transform.cos) <= epsilon && Math.abs(sin - transform.sin) <= epsilon
+			&& Math.abs(x - transform.x) <= epsilon && Math.abs(y - transform.y) <= epsilon;
+	}
+
+	/**
+	 * Transformations are equal if they have the same terms.
+	 */
+	public boolean equals(Object o)
+	{
+		boolean ret = false;
+
+		if (o == this)
+			ret = true;
+		else if (o == null)
+			ret = false;
+		else if (!o.getClass().equals(this.getClass()))
+			ret = false;
+		else
+		{
+			Transform2D other = (Transform2D)o;
+			ret = other.cos == cos && other.sin == sin && other.x == x && other.y == y;
+		}
+		return ret;
+	}
+
+	public int hashCode()
+	{
+		long bits = Double.doubleToLongBits(cos);
+		bits = bits * 31 + Double.doubleToLongBits(sin);
+		bits = bits * 31 + Double.doubleToLongBits(x);
+		bits = bits * 31 + Double.doubleToLongBits(y);
+		return (int)(bits ^ (bits >>> 32));
+	}
+
+	public String toString()
+	{
+		return "(" + getAngle() + ", " + getX() + ", " + getY() + ")";
+	}
+}
@@ -1,12 +1,13 @@
 package eca.ss;
 
 import eca.ss.enaction.Act;
+import tracing.ITraceValue;
 
 /**
  * A proposition to enact an act. 
  * @author ogeorgeon
  */
-public interface ActProposition extends Comparable<ActProposition> 
+public interface ActProposition extends Comparable<ActProposition>, ITraceValue
 {
 	/**
 	 * @return The interaction proposed by this proposition.
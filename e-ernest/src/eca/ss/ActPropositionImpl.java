@@ -80,4 +80,8 @@ public class ActPropositionImpl implements ActProposition
 		return "act: " + this.act.getLabel() + " weighted_value: " + this.weightedValue / 10 + " proposing_weight: " + this.weight;
 	}
 
+	public String getTraceValue(){
+		return toString();
+	}
+
 }
@@ -2,8 +2,13 @@ package eca.ss;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import tracing.ITracer;
+import utils.Log;
+import utils.LongIntMap;
+import eca.AgentMemory;
 import eca.construct.ActionImpl;
 import eca.construct.Appearance;
 import eca.construct.AppearanceImpl;
@@ -19,6 +24,13 @@ import eca.ss.enaction.Enaction;
 
 public class Imos implements IImos 
 {	
+	/** Orders acts by id, that is, by order of creation. */
+	private static final Comparator<Act> CREATION_ORDER = new Comparator<Act>(){
+		public int compare(Act a1, Act a2) {
+			return a1.getId() < a2.getId() ? -1 : (a1.getId() == a2.getId() ? 0 : 1);
+		}
+	};
+
 	/** Default Activation threshold (The weight threshold for higher-level learning with the second learning mechanism). */
 	public final int ACTIVATION_THRESH = 1;
 
@@ -34,6 +46,20 @@ public class Imos implements IImos
 	/** A representation of the internal state for display in the environment. */
 	private String m_internalState = "";
 	
+	/** The memory of the agent. */
+	private AgentMemory memory;
+	
+	/** The position of the proposition of each act in the list of propositions, indexed by the act's id */
+	private LongIntMap m_propositionIndex = new LongIntMap();
+	
+	/**
+	 * @param memory The memory of the agent.
+	 */
+	public Imos(AgentMemory memory)
+	{
+		this.memory = memory;
+	}
+	
 	public void setRegularityThreshold(int regularityThreshold)
 	{
 		this.regularityThreshold = regularityThreshold;
@@ -78,9 +104,9 @@ public class Imos implements IImos
 			else
 				intendedPrimitiveAct.terminate();
 			
-			System.out.println("Enacted primitive act " + enactedPrimitiveAct );
-			System.out.println("Top remaining act " + topRemainingAct );
-			System.out.println("Enacted top act " + topEnactedAct );			
+			Log.debug("Enacted primitive act ", enactedPrimitiveAct);
+			Log.debug("Top remaining act ", topRemainingAct);
+			Log.debug("Enacted top act ", topEnactedAct);			
 		}					
 		
 		enaction.setTopEnactedAct(topEnactedAct);
@@ -113,22 +139,22 @@ public class Imos implements IImos
 				m_internalState= "!";
 				enaction.setSuccessful(false);					
 				enaction.getIntendedAction().addAct(enactedTopAct);
-				ActionImpl.absorbIdenticalAction(enaction.getIntendedAction(), m_tracer);
+				ActionImpl.absorbIdenticalAction(memory, enaction.getIntendedAction(), m_tracer);
 			}
 			
 			// learn from the  context and the enacted interaction
 			m_nbSchemaLearned = 0;
-			System.out.println("Learn from enacted top interaction");
+			Log.debug("Learn from enacted top interaction");
 			ArrayList<Act> streamContextList = record(initialLearningContext, enactedTopAct);
 						
 			// learn from the base context and the stream interaction	
 			 if (streamContextList.size() > 0) // TODO find a better way than relying on the enacted act being on the top of the list
 			 {
 				 Act streamInteraction = streamContextList.get(0); // The stream act is the first learned 
-				 System.out.println("Streaming " + streamInteraction);
+				 Log.debug("Streaming ", streamInteraction);
 				 if (streamInteraction.getWeight() > ACTIVATION_THRESH)
 				 {
-					System.out.println("Learn from stream interaction");
+					Log.debug("Learn from stream interaction");
 					record(previousLearningContext, streamInteraction);
 				 }
 			 }
@@ -142,7 +168,7 @@ public class Imos implements IImos
 					// check the consistency with the existing appearance
 					boolean consistent = true;
 					for (Act act : preAppearance.getAffordedActs())
-						if (ActionImpl.getAction(enactedTopAct).equals(ActionImpl.getAction(act)))
+						if (ActionImpl.getAction(memory, enactedTopAct).equals(ActionImpl.getAction(memory, act)))
 							if(!enactedTopAct.equals(act))
 								consistent = false;
 							
@@ -150,19 +176,19 @@ public class Imos implements IImos
 						preAppearance.addAffordedAct(enactedTopAct);
 						//preAppearance.addAct(enactedTopAct);
 					else{
-						Appearance newAppearance  = AppearanceImpl.createOrGet(enactedTopAct);
+						Appearance newAppearance  = AppearanceImpl.createOrGet(memory, enactedTopAct);
 						newAppearance.addAffordedAct(enactedTopAct);
 						newAppearance.addAct(preAppearance.getStillAct());
 						newAppearance.setStillAct(preAppearance.getStillAct());
-						newAppearance.setFlowAct(ActImpl.createOrGetCompositeAct(preAppearance.getStillAct(), enactedTopAct));
-						if (m_tracer != null) this.m_tracer.addEventElement("new_appearance", newAppearance.getLabel());
+						newAppearance.setFlowAct(ActImpl.createOrGetCompositeAct(memory, preAppearance.getStillAct(), enactedTopAct));
+						if (m_tracer != null && m_tracer.accepts("new_appearance")) this.m_tracer.addEventElement("new_appearance", newAppearance.getLabel());
 					}
 				//}
 			}
 			
 			// If the enacted act is STILL then keep the appearance
 			if (enactedTopAct.isPrimitive() && enactedTopAct.getPrimitive().getDisplacement().equals(DisplacementImpl.DISPLACEMENT_STILL))
-				enaction.setAppearances(AppearanceImpl.getEvokedAppeareances(enactedTopAct));
+				enaction.setAppearances(AppearanceImpl.getEvokedAppeareances(memory, enactedTopAct));
 			else
 				enaction.setAppearances(new ArrayList<Appearance>(0));
 			
@@ -180,7 +206,7 @@ public class Imos implements IImos
 	 */
     private Act addCompositeAct(Act preInteraction, Act postInteraction)
     {
-    	return  ActImpl.createOrGetCompositeAct(preInteraction, postInteraction);
+    	return  ActImpl.createOrGetCompositeAct(memory, preInteraction, postInteraction);
     }
 
 	/**
@@ -209,9 +235,9 @@ public class Imos implements IImos
 				// Build a new interaction with the context pre-interaction and the enacted post-interaction 
 				Act newInteraction = addCompositeAct(preInteraction, enactedInteraction);
 				newInteraction.setWeight(newInteraction.getWeight() + 1);
-				System.out.println("learned " + newInteraction);
-				if (m_tracer != null)	
-					m_tracer.addSubelement(learnElmnt, "interaction", newInteraction.toString());
+				Log.trace("learned ", newInteraction);
+				if (m_tracer != null)
+					m_tracer.addSubelement(learnElmnt, "interaction", newInteraction);
 			
 				// The new interaction belongs to the context 
 				// if its pre-interaction and post-interaction have passed the regularity threshold
@@ -270,6 +296,7 @@ public class Imos implements IImos
 	public ArrayList<ActProposition> propose(Enaction enaction)
 	{
 		ArrayList<ActProposition> propositions = new ArrayList<ActProposition>();
+		m_propositionIndex.clear();
 		
 		Object activationElmt = null;
 		Object propositionElmt = null;
@@ -277,23 +304,29 @@ public class Imos implements IImos
 			activationElmt = m_tracer.addEventElement("activation", true);
 			propositionElmt = m_tracer.addEventElement("actPropositions", true);
 		}
-		for (Act activatedAct : ActImpl.getACTS())
+		
+		// Only visit the composite acts whose pre-act belongs to the activation context.
+		// Acts are visited in order of creation so that ties between propositions are resolved as before.
+		List<Act> activatedActs = new ArrayList<Act>(ActImpl.getPrimitiveActs(memory));
+		for (Act contextAct : enaction.getFinalActivationContext())
+			activatedActs.addAll(ActImpl.getCompositeActs(memory, contextAct));
+		Collections.sort(activatedActs, CREATION_ORDER);
+		
+		for (Act activatedAct : activatedActs)
 		{
 			if (activatedAct.isPrimitive()){
 				addProposition(propositions, activatedAct, 0);
 			}
 			else
 			{
-				if (enaction.getFinalActivationContext().contains(activatedAct.getPreAct())){
-					addProposition(propositions, activatedAct);
-					if (m_tracer != null)
-						m_tracer.addSubelement(activationElmt, "ActivatedAct", activatedAct + " intention " + activatedAct.getPostAct());
-				}
+				addProposition(propositions, activatedAct);
+				if (activationElmt != null && m_tracer.accepts("ActivatedAct"))
+					m_tracer.addSubelement(activationElmt, "ActivatedAct", activatedAct + " intention " + activatedAct.getPostAct());
 			}
 		}
-		if (this.m_tracer != null){
+		if (propositionElmt != null){
 			for (ActProposition ap : propositions)
-				this.m_tracer.addSubelement(propositionElmt, "act_proposition", ap.toString());
+				this.m_tracer.addSubelement(propositionElmt, "act_proposition", ap);
 		}
 		
 		return propositions;
@@ -308,16 +341,7 @@ public class Imos implements IImos
 	{
 		ActProposition proposition = new ActPropositionImpl(activatedAct.getPostAct(), activatedAct.getWeight());
 		proposition.setWeightedValue(activatedAct.getPostAct().getValue() * activatedAct.getWeight());
-	
-		int j = propositions.indexOf(proposition);
-		if (j == -1)
-			propositions.add(proposition);
-		else
-		{
-			ActProposition previousProposition = propositions.get(j);
-			previousProposition.addWeight(proposition.getWeight());
-			previousProposition.setWeightedValue(proposition.getWeightedValue() + previousProposition.getWeightedValue());
-		}
+		aggregate(propositions, proposition);
 	}
 
 	/**
@@ -329,10 +353,22 @@ public class Imos implements IImos
 	{
 		ActProposition proposition = new ActPropositionImpl(proposededAct, weight);
 		proposition.setWeightedValue(proposededAct.getValue() * weight);
+		aggregate(propositions, proposition);
+	}
 	
-		int j = propositions.indexOf(proposition);
-		if (j == -1)
+	/**
+	 * Add the proposition to the list, or add its weight to the proposition of the same act.
+	 * @param propositions The list of propositions.
+	 * @param proposition The new proposition.
+	 */
+	private void aggregate(ArrayList<ActProposition> propositions, ActProposition proposition)
+	{
+		int j = m_propositionIndex.get(proposition.getAct().getId());
+		if (j == LongIntMap.NO_VALUE)
+		{
+			m_propositionIndex.put(proposition.getAct().getId(), propositions.size());
 			propositions.add(proposition);
+		}
 		else
 		{
 			ActProposition previousProposition = propositions.get(j);
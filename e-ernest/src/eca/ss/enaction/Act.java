@@ -2,6 +2,7 @@ package eca.ss.enaction;
 
 import eca.Primitive;
 import eca.construct.egomem.Area;
+import tracing.ITraceValue;
 
 /**
  * An Act is an Interaction with spatial information (Area) attached in order to characterize its enaction in space.
@@ -13,10 +14,16 @@ import eca.construct.egomem.Area;
  * A composite Act is a tuple of two acts (pre-act, post-act)
  * ?? A composite Act is enactable if all its subacts concern the same PhenomenonType. ??
  * ?? When the pre-act and post-act have the same Area then a serial interaction can be constructed as the series of their interactions  
+ * An Act can be given as the value of a trace element: its string representation is only built if the element is traced.
  * @author Olivier
  */
-public interface Act 
+public interface Act extends ITraceValue
 {
+	/**
+	 * @return The identifier of this act (its index in the agent's act memory).
+	 */
+	public int getId();
+	
 	/**
 	 * @return The label of this interaction (unique identifier)
 	 */
@@ -1,11 +1,15 @@
 package eca.ss.enaction;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Collections;
+import java.util.List;
+import utils.Log;
+import utils.LongIntMap;
+import eca.AgentMemory;
 import eca.Primitive;
 import eca.PrimitiveImpl;
+import eca.construct.ActionImpl;
 import eca.construct.Displacement;
 import eca.construct.DisplacementImpl;
 import eca.construct.egomem.Area;
@@ -17,12 +21,13 @@ import eca.construct.egomem.Area;
 public class ActImpl implements Act 
 {
 
-	/** The list of all acts */
-	private static Map<String , Act> ACTS = new LinkedHashMap<String , Act>() ;
 	/** Default weight of primitive interactions */
 	private static int PRIMITIVE_WEIGHT = 100;
 	
-	private String label = "";
+	private int id;
+	/** The label is computed once at construction because acts are immutable structures */
+	private final String label;
+	private final int hashCode;
 	private boolean m_primitive = true;
 	private Act preAct = null;
 	private Act postAct = null;
@@ -34,28 +39,75 @@ public class ActImpl implements Act
 	private Primitive primitive;
 	private Area area;
 	private int color;
+	/** The composite acts whose pre-act is this act (null until the first one is created) */
+	private List<Act> compositeActs = null;
+	/** The composite acts whose post-act is this act (null until the first one is created) */
+	private List<Act> postCompositeActs = null;
 	
 	/**
 	 * @return The list of all acts known by the agent.
 	 */
-	public static Collection<Act> getACTS(){
-		return ACTS.values();
+	public static Collection<Act> getACTS(AgentMemory memory){
+		return Collections.unmodifiableList(memory.getActs());
+	}
+	
+	/**
+	 * @return The list of primitive acts known by the agent, in order of creation.
+	 */
+	public static Collection<Act> getPrimitiveActs(AgentMemory memory){
+		return memory.getPrimitiveActs().values();
+	}
+	
+	/**
+	 * The reverse activation index: the acts that an act activates when it belongs to the activation context.
+	 * @param memory The agent's memory.
+	 * @param preAct The pre-act.
+	 * @return The composite acts whose pre-act is preAct, in order of creation.
+	 */
+	public static List<Act> getCompositeActs(AgentMemory memory, Act preAct){
+		List<Act> compositeActs = ((ActImpl)memory.getActs().get(preAct.getId())).compositeActs;
+		if (compositeActs == null)
+			return Collections.emptyList();
+		return compositeActs;
+	}
+	
+	/**
+	 * @param memory The agent's memory.
+	 * @param postAct The post-act.
+	 * @return The composite acts whose post-act is postAct, in order of creation.
+	 */
+	public static List<Act> getPostCompositeActs(AgentMemory memory, Act postAct){
+		List<Act> postCompositeActs = ((ActImpl)memory.getActs().get(postAct.getId())).postCompositeActs;
+		if (postCompositeActs == null)
+			return Collections.emptyList();
+		return postCompositeActs;
+	}
+	
+	/**
+	 * @param memory The agent's memory.
+	 * @param id The act's id.
+	 * @return The act that has this id.
+	 */
+	public static Act getAct(AgentMemory memory, int id){
+		return memory.getActs().get(id);
 	}
 
 	/**
+	 * @param memory The agent's memory.
 	 * @param interaction The primitive interaction from which this act is made.
 	 * @param area The area.
 	 * @return The created primitive interaction.
 	 */
-	public static Act createOrGetPrimitiveAct(Primitive interaction, Area area)
+	public static Act createOrGetPrimitiveAct(AgentMemory memory, Primitive interaction, Area area)
 	{
 		String key = createPrimitiveKey(interaction, area);
-		if (!ACTS.containsKey(key)){
-			ActImpl newAct = new ActImpl(key, true, null, null, interaction.getValue(), interaction, area);
-			ACTS.put(key, newAct);
-			System.out.println("Define primitive act " + key);
+		Act act = memory.getPrimitiveActs().get(key);
+		if (act == null){
+			act = new ActImpl(memory, key, true, null, null, interaction.getValue(), interaction, area);
+			memory.getPrimitiveActs().put(key, act);
+			Log.debug("Define primitive act ", key);
 		}
-		return ACTS.get(key);
+		return act;
 	}
 	
 	private static String createPrimitiveKey(Primitive interaction, Area area) {
@@ -64,36 +116,51 @@ public class ActImpl implements Act
 	}
 	
 	/**
+	 * @param memory The agent's memory.
 	 * @param preAct The pre-act.
 	 * @param postAct The post-act.
 	 * @return The created composite interaction.
 	 */
-	public static Act createOrGetCompositeAct(Act preAct, Act postAct)
+	public static Act createOrGetCompositeAct(AgentMemory memory, Act preAct, Act postAct)
 	{
-		String key = createCompositeKey(preAct, postAct);
-		int enactionValue = preAct.getEnactionValue() + postAct.getEnactionValue();
-		if (!ACTS.containsKey(key)){
-			Primitive primitive = PrimitiveImpl.createOrGetComposite(preAct.getPrimitive(), postAct.getPrimitive());
-			Act newAct = new ActImpl(key, false, preAct, postAct, enactionValue, primitive, postAct.getArea());
+		long key = createCompositeKey(preAct, postAct);
+		int id = memory.getCompositeActIndex().get(key);
+		if (id == LongIntMap.NO_VALUE){
+			int enactionValue = preAct.getEnactionValue() + postAct.getEnactionValue();
+			Primitive primitive = PrimitiveImpl.createOrGetComposite(memory, preAct.getPrimitive(), postAct.getPrimitive());
+			String label = "(" + preAct.getLabel() + postAct.getLabel() + ")";
+			ActImpl newAct = new ActImpl(memory, label, false, preAct, postAct, enactionValue, primitive, postAct.getArea());
 			//Act newAct = new ActImpl(key, false, preAct, postAct, enactionValue, null, postAct.getArea());
 			
 //			Transform3D newTransform = new Transform3D();
 //          newTransform.mul(postAct.getDisplacement().getTransform3D(), preAct.getDisplacement().getTransform3D());
 //			Displacement displacement = DisplacementImpl.createOrGet(newTransform);
 
-			ACTS.put(key, newAct);
+			memory.getCompositeActIndex().put(key, newAct.getId());
+			ActImpl pre = (ActImpl)memory.getActs().get(preAct.getId());
+			if (pre.compositeActs == null)
+				pre.compositeActs = new ArrayList<Act>(4);
+			pre.compositeActs.add(newAct);
+			ActImpl post = (ActImpl)memory.getActs().get(postAct.getId());
+			if (post.postCompositeActs == null)
+				post.postCompositeActs = new ArrayList<Act>(4);
+			post.postCompositeActs.add(newAct);
+			ActionImpl.addSequence(memory, newAct);
+			return newAct;
 		}
-		return ACTS.get(key);
+		return memory.getActs().get(id);
 	}
 	
-	private static String createCompositeKey(Act preAct, Act postAct) {
-		String key = preAct.getLabel() + postAct.getLabel();
-		return key;
+	private static long createCompositeKey(Act preAct, Act postAct) {
+		return LongIntMap.key(preAct.getId(), postAct.getId());
 	}
 	
-	private ActImpl(String label, boolean primitive, Act preAct, Act postAct, int value, Primitive interaction, Area area)
+	private ActImpl(AgentMemory memory, String label, boolean primitive, Act preAct, Act postAct, int value, Primitive interaction, Area area)
 	{
+		this.id = memory.getActs().size();
+		memory.getActs().add(this);
 		this.label = label;
+		this.hashCode = label.hashCode();
 		m_primitive = primitive;
 		this.primitive = interaction;
 		this.preAct = preAct;
@@ -106,6 +173,11 @@ public class ActImpl implements Act
 		this.area = area;
 	}
 	
+	public int getId()
+	{
+		return this.id;
+	}
+	
 	public Act getPreAct() 
 	{
 		return preAct;
@@ -128,6 +200,8 @@ public class ActImpl implements Act
 	
 	/**
 	 * Acts are equal if they have the same label. 
+	 * Acts are unique in the act memory, so the labels are only compared 
+	 * when two distinct objects have the same hash code.
 	 */
 	public boolean equals(Object o)
 	{
@@ -141,21 +215,21 @@ public class ActImpl implements Act
 			ret = false;
 		else
 		{
-			Act other = (Act)o;
-			ret = (other.getLabel().equals(getLabel()));
+			ActImpl other = (ActImpl)o;
+			ret = (other.hashCode == this.hashCode && other.label.equals(this.label));
 		}
 		
 		return ret;
 	}
+	
+	public int hashCode()
+	{
+		return this.hashCode;
+	}
 
 	public String getLabel() 
 	{
-		String l = "";
-		if (m_primitive)
-			l = this.label;
-		else
-			l = "(" + preAct.getLabel() + postAct.getLabel() + ")";
-		return l; 
+		return this.label; 
 	}
 
 	public void setWeight(int enactionWeight) 
@@ -251,6 +325,11 @@ public class ActImpl implements Act
 		return getLabel() + "(" + value/10 + "," + m_enactionWeight + ")";
 	}
 
+	public String getTraceValue()
+	{
+		return toString();
+	}
+
 	public Area getArea() {
 		if (isPrimitive())
 			return this.area;
@@ -286,7 +365,7 @@ public class ActImpl implements Act
 	}
 	
 //	public void initPrimitive(){
-//		this.primitive = PrimitiveImpl.createOrGetComposite(preAct.getPrimitive(), postAct.getPrimitive());
+//		this.primitive = PrimitiveImpl.createOrGetComposite(memory, preAct.getPrimitive(), postAct.getPrimitive());
 //	}
 
 }
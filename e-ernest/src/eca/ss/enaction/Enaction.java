@@ -2,7 +2,6 @@ package eca.ss.enaction;
 
 import java.util.ArrayList;
 import java.util.List;
-import javax.media.j3d.Transform3D;
 import tracing.ITracer;
 import eca.ActInstance;
 import eca.construct.Action;
@@ -11,6 +10,7 @@ import eca.construct.Displacement;
 import eca.construct.egomem.Area;
 import eca.construct.egomem.PhenomenonInstance;
 import eca.construct.experiment.Experiment;
+import eca.spas.Transform2D;
 import ernest.Effect;
 
 /**
@@ -31,7 +31,7 @@ public interface Enaction
 	 * @param actInstances The list of places received from the environment
 	 * @param transform The transformation sensed in the environment.
 	 */
-	public void track(List<ActInstance> actInstances, Transform3D transform, PhenomenonInstance focusPhenomenonInstance);
+	public void track(List<ActInstance> actInstances, Transform2D transform, PhenomenonInstance focusPhenomenonInstance);
 	
 	/**
 	 * @param displacement The displacement sensed during this primitive enaction.
@@ -187,7 +187,7 @@ public interface Enaction
 	/**
 	 * @return The transformation generated by this primitive enaction
 	 */
-	public Transform3D getTransform3D();
+	public Transform2D getTransform();
 
 	public void setIntendedAction(Action action);
 	public Action getIntendedAction();
@@ -2,11 +2,12 @@ package eca.ss.enaction;
 
 import java.util.ArrayList;
 import java.util.List;
-import javax.media.j3d.Transform3D;
 import javax.vecmath.Point3f;
 import tracing.ITracer;
+import utils.Log;
 import eca.ActInstance;
 import eca.ActInstanceImpl;
+import eca.AgentMemory;
 import eca.Primitive;
 import eca.PrimitiveImpl;
 import eca.construct.Action;
@@ -18,6 +19,7 @@ import eca.construct.egomem.Area;
 import eca.construct.egomem.AreaImpl;
 import eca.construct.egomem.PhenomenonInstance;
 import eca.construct.experiment.Experiment;
+import eca.spas.Transform2D;
 import ernest.Effect;
 
 /**
@@ -65,7 +67,7 @@ public class EnactionImpl implements Enaction
 	/** final status of this enaction (true correct, false incorrect) */
 	private boolean m_correct = true;
 	
-	private Transform3D transformation = new Transform3D();
+	private Transform2D transformation = Transform2D.IDENTITY;
 	
 	//private Area initialArea = AreaImpl.createOrGet(new Point3f());
 	
@@ -79,6 +81,17 @@ public class EnactionImpl implements Enaction
 	
 	private ActInstance salientActInstance;
 	
+	/** The memory of the agent */
+	private AgentMemory memory;
+	
+	/**
+	 * @param memory The memory of the agent.
+	 */
+	public EnactionImpl(AgentMemory memory)
+	{
+		this.memory = memory;
+	}
+	
 	public void setIntendedPrimitiveAct(Act act) 
 	{
 		m_intendedPrimitiveAct = act;
@@ -243,9 +256,14 @@ public class EnactionImpl implements Enaction
 	{
 		if (tracer != null && m_intendedPrimitiveAct != null)
 		{
-			tracer.addEventElement("top_level", m_topAct.getLength() + "");
-			tracer.addEventElement("satisfaction", m_enactedPrimitiveAct.getEnactionValue()/10 + "");
-			tracer.addEventElement("primitive_enacted_schema", m_enactedPrimitiveAct.getLabel().substring(0, 1));
+			if (tracer.accepts("top_level"))
+				tracer.addEventElement("top_level", m_topAct.getLength() + "");
+			if (tracer.accepts("satisfaction"))
+				tracer.addEventElement("satisfaction", m_enactedPrimitiveAct.getEnactionValue()/10 + "");
+			if (tracer.accepts("primitive_enacted_schema"))
+				tracer.addEventElement("primitive_enacted_schema", m_enactedPrimitiveAct.getLabel().substring(0, 1));
+			if (!tracer.accepts("track_enaction"))
+				return;
 			
 			Object e = tracer.addEventElement("track_enaction");		
 			tracer.addSubelement(e, "top_intention", m_topAct.getLabel());
@@ -266,23 +284,23 @@ public class EnactionImpl implements Enaction
 
 	public void traceCarry(ITracer tracer)
 	{
-		if (tracer != null)
+		if (tracer != null && tracer.accepts("carry_enaction"))
 		{
 			Object e = tracer.addEventElement("carry_enaction");
 
-			tracer.addSubelement(e, "top_intention", m_topAct.toString());
+			tracer.addSubelement(e, "top_intention", m_topAct);
 			tracer.addSubelement(e, "top_level", m_topAct.getLength() + "");
 			if (m_topEnactedAct != null)
-				tracer.addSubelement(e, "top_enacted", m_topEnactedAct.toString());
-			tracer.addSubelement(e, "top_remaining", m_topRemainingAct.toString());
+				tracer.addSubelement(e, "top_enacted", m_topEnactedAct);
+			tracer.addSubelement(e, "top_remaining", m_topRemainingAct);
 			tracer.addSubelement(e, "next_step", m_step + "");
-			tracer.addSubelement(e, "next_primitive_intended_act", m_intendedPrimitiveAct.toString());
+			tracer.addSubelement(e, "next_primitive_intended_act", m_intendedPrimitiveAct);
 		}
 	}
 	
 	public void traceTerminate(ITracer tracer)
 	{
-		if (tracer != null)
+		if (tracer != null && tracer.accepts("terminate_enaction"))
 		{
 			Object e = tracer.addEventElement("terminate_enaction");
 			
@@ -291,7 +309,7 @@ public class EnactionImpl implements Enaction
 			Object activation = tracer.addSubelement(e, "activation_context");
 			for (Act i : m_finalActivationContext)	
 			{
-				System.out.println("Activation context " + i);
+				Log.trace("Activation context ", i);
 				tracer.addSubelement(activation, "interaction", i.getLabel());
 			}
 			Object learning = tracer.addSubelement(e, "learning_context");
@@ -317,14 +335,14 @@ public class EnactionImpl implements Enaction
 
 	public void track(Effect input) {
 		
-		Transform3D t = input.getTransformation();
-		Primitive p = PrimitiveImpl.get(">_");
+		Transform2D t = input.getTransform();
+		Primitive p = PrimitiveImpl.get(memory, ">_");
 		Point3f l = new Point3f();
 		
 		if (this.m_intendedPrimitiveAct != null){
 			// If we are not on startup
 			// Compute the enacted primitive act from the primitive interaction and the area.
-			p = PrimitiveImpl.get(input.getEnactedInteractionLabel());
+			p = PrimitiveImpl.get(memory, input.getEnactedInteractionLabel());
 			l.set(input.getLocation());
 		}
 
@@ -334,11 +352,16 @@ public class EnactionImpl implements Enaction
 		track(actInstances, t, null);
 	}	
 	
-	public void track(List<ActInstance> actInstances, Transform3D transform, PhenomenonInstance focusPhenomenonInstance){
+	public void track(List<ActInstance> actInstances, Transform2D transform, PhenomenonInstance focusPhenomenonInstance){
 		
+		// The environment's primitive interactions are replaced by those of the agent's memory
+		for (ActInstance actInstance : actInstances){
+			Primitive primitive = actInstance.getPrimitive();
+			actInstance.setPrimitive(PrimitiveImpl.createOrGet(memory, primitive.getLabel(), primitive.getValue()));
+		}
 		this.actInstances = actInstances;
-		this.displacement = DisplacementImpl.createOrGet(transform);
-		this.transformation.set(transform);
+		this.displacement = DisplacementImpl.createOrGet(memory, transform);
+		this.transformation = transform;
 		
 		this.salientActInstance  = null;
 		
@@ -356,7 +379,7 @@ public class EnactionImpl implements Enaction
 				if (actInstance.getModality() == ActInstance.MODALITY_CONSUME)
 					this.salientActInstance = actInstance;
 		
-			this.m_enactedPrimitiveAct =this.salientActInstance.getAct();
+			this.m_enactedPrimitiveAct =this.salientActInstance.getAct(memory);
 			this.area = this.salientActInstance.getArea();
 			this.m_enactedPrimitiveAct.setArea(this.area);
 			this.m_enactedPrimitiveAct.setColor(this.salientActInstance.getDisplayCode());
@@ -392,7 +415,7 @@ public class EnactionImpl implements Enaction
 		this.appearances = appearances;
 	}
 
-	public Transform3D getTransform3D() {
+	public Transform2D getTransform() {
 		return this.transformation;
 	}
 
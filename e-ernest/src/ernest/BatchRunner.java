@@ -0,0 +1,228 @@
+package ernest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+
+import eca.ActInstance;
+import eca.AgentMemory;
+import eca.Primitive;
+import eca.spas.ArraySpatialMemory;
+import eca.spas.SpatialMemory;
+import eca.spas.SpatialMemoryImpl;
+
+/**
+ * Runs an Ernest agent in an environment as fast as possible, without display nor tracing.
+ * The run stops after a given number of cycles or a given time budget, whichever comes first.
+ * @author Olivier
+ */
+public class BatchRunner
+{
+	private Ernest ernest;
+	private IEnvironment environment;
+	private ActInstance enactedActInstance = null;
+
+	private long nbCycles = 0;
+	private long duration = 0;
+	private long satisfaction = 0;
+	private float lastMeanSatisfaction = 0;
+	private long peakHeap = 0;
+
+	/**
+	 * @param environment The environment.
+	 * @param regularityThreshold The Regularity Sensibility Threshold.
+	 * @param maxSchemaLength The Maximum Schema Length.
+	 */
+	public BatchRunner(IEnvironment environment, int regularityThreshold, int maxSchemaLength)
+	{
+		this(environment, regularityThreshold, maxSchemaLength, new SpatialMemoryImpl());
+	}
+
+	/**
+	 * @param environment The environment.
+	 * @param regularityThreshold The Regularity Sensibility Threshold.
+	 * @param maxSchemaLength The Maximum Schema Length.
+	 * @param spatialMemory The local space memory of the agent.
+	 */
+	public BatchRunner(IEnvironment environment, int regularityThreshold, int maxSchemaLength, SpatialMemory spatialMemory)
+	{
+		this.environment = environment;
+		this.ernest = new Ernest(spatialMemory);
+		this.ernest.setParameters(regularityThreshold, maxSchemaLength);
+		environment.initErnest(this.ernest);
+	}
+
+	/**
+	 * Run the agent.
+	 * The peaks of the heap pools are reset at the beginning of the run (see getPeakHeap()).
+	 * @param maxCycles The maximum number of cycles (0 for no limit).
+	 * @param maxMillis The time budget in milliseconds (0 for no limit).
+	 */
+	public void run(long maxCycles, long maxMillis)
+	{
+		List<MemoryPoolMXBean> heapPools = new ArrayList<MemoryPoolMXBean>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP && pool.isValid())
+			{
+				pool.resetPeakUsage();
+				heapPools.add(pool);
+			}
+
+		long start = System.nanoTime();
+		long deadline = maxMillis > 0 ? start + maxMillis * 1000000L : Long.MAX_VALUE;
+		long cycle = 0;
+		long runSatisfaction = 0;
+		int nbSatisfactions = 0;
+		while ((maxCycles <= 0 || cycle < maxCycles) && System.nanoTime() < deadline)
+		{
+			List<ActInstance> actInstances = new ArrayList<ActInstance>(1);
+			if (enactedActInstance != null)
+				actInstances.add(enactedActInstance);
+
+			Primitive intendedInteraction = ernest.step(actInstances, environment.getTransform());
+			// The enacted act instance now holds the agent's primitive interaction, which has the satisfaction value.
+			if (enactedActInstance != null)
+			{
+				runSatisfaction += enactedActInstance.getPrimitive().getValue();
+				nbSatisfactions++;
+			}
+			enactedActInstance = environment.enact(intendedInteraction);
+			cycle++;
+		}
+		duration += System.nanoTime() - start;
+		nbCycles += cycle;
+		satisfaction += runSatisfaction;
+		lastMeanSatisfaction = nbSatisfactions > 0 ? runSatisfaction / 10f / nbSatisfactions : 0;
+
+		long runPeakHeap = 0;
+		for (MemoryPoolMXBean pool : heapPools)
+			runPeakHeap += pool.getPeakUsage().getUsed();
+		peakHeap = Math.max(peakHeap, runPeakHeap);
+	}
+
+	/**
+	 * @return The number of cycles run.
+	 */
+	public long getNbCycles()
+	{
+		return nbCycles;
+	}
+
+	/**
+	 * @return The number of cycles per second.
+	 */
+	public float getCyclesPerSecond()
+	{
+		return duration > 0 ? nbCycles * 1e9f / duration : 0;
+	}
+
+	/**
+	 * @return The mean satisfaction of the enacted primitive interactions (in the unit of addInteraction()).
+	 */
+	public float getMeanSatisfaction()
+	{
+		return nbCycles > 1 ? satisfaction / 10f / (nbCycles - 1) : 0;
+	}
+
+	/**
+	 * @return The mean satisfaction of the enacted primitive interactions during the last call to run().
+	 */
+	public float getLastMeanSatisfaction()
+	{
+		return lastMeanSatisfaction;
+	}
+
+	/**
+	 * @return The number of composite acts learned by the agent.
+	 */
+	public int getNbActsLearned()
+	{
+		AgentMemory memory = ernest.getMemory();
+		return memory.getActs().size() - memory.getPrimitiveActs().size();
+	}
+
+	/**
+	 * The peak of a run is the sum of the peak usages of the heap pools, an upper bound of the peak heap usage
+	 * (the pools do not necessarily peak at the same time).
+	 * The heap pools are shared by the whole JVM and run() resets their peaks:
+	 * runners that run concurrently, as in a ParameterSweep, measure each other's allocations
+	 * (so the sweep does not report this value).
+	 * @return The largest peak of the runs in bytes.
+	 */
+	public long getPeakHeap()
+	{
+		return peakHeap;
+	}
+
+	/**
+	 * @return The agent.
+	 */
+	public Ernest getErnest()
+	{
+		return ernest;
+	}
+
+	/**
+	 * @return A one-line summary of the run.
+	 */
+	public String getSummary()
+	{
+		return "cycles: " + nbCycles
+			+ ", cycles/s: " + Math.round(getCyclesPerSecond())
+			+ ", mean satisfaction: " + getMeanSatisfaction()
+			+ ", acts learned: " + getNbActsLearned()
+			+ ", peak heap: " + (peakHeap / (1024 * 1024)) + " MB";
+	}
+
+	/**
+	 * Create an environment from its class name.
+	 * @param name The class name (classes of the ernest package may omit the package name).
+	 * @return The environment.
+	 */
+	public static IEnvironment createEnvironment(String name)
+	{
+		String className = name.indexOf('.') < 0 ? "ernest." + name : name;
+		try
+		{
+			return (IEnvironment)Class.forName(className).getConstructor().newInstance();
+		}
+		catch (InvocationTargetException e)
+		{
+			throw new IllegalArgumentException("Cannot create environment " + name, e.getCause());
+		}
+		catch (Exception e)
+		{
+			// ClassNotFoundException, NoSuchMethodException, InstantiationException, IllegalAccessException or ClassCastException
+			throw new IllegalArgumentException("Cannot create environment " + name, e);
+		}
+	}
+
+	/**
+	 * Run an agent and print the summary (the agent's log is quiet unless the log level is set to DEBUG).
+	 * @param args [environment class] [number of cycles] [time budget in seconds] [regularity threshold] [max schema length] [spatial memory: default or array]
+	 */
+	public static void main(String[] args)
+	{
+		String environmentName = args.length > 0 ? args[0] : "Roesch2";
+		long maxCycles = args.length > 1 ? Long.parseLong(args[1]) : 10000;
+		long maxMillis = args.length > 2 ? Long.parseLong(args[2]) * 1000 : 0;
+		int regularityThreshold = args.length > 3 ? Integer.parseInt(args[3]) : 6;
+		int maxSchemaLength = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+		String spatialMemoryName = args.length > 5 ? args[5] : "default";
+
+		SpatialMemory spatialMemory;
+		if (spatialMemoryName.equals("array"))
+			spatialMemory = new ArraySpatialMemory();
+		else if (spatialMemoryName.equals("default"))
+			spatialMemory = new SpatialMemoryImpl();
+		else
+			throw new IllegalArgumentException("Unknown spatial memory " + spatialMemoryName + " (default or array)");
+
+		BatchRunner runner = new BatchRunner(createEnvironment(environmentName), regularityThreshold, maxSchemaLength, spatialMemory);
+		runner.run(maxCycles, maxMillis);
+		System.out.println(environmentName + " " + runner.getSummary());
+	}
+}
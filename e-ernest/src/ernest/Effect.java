@@ -4,6 +4,7 @@ package ernest;
 import javax.media.j3d.Transform3D;
 import javax.vecmath.Point3f;
 import tracing.ITracer;
+import eca.spas.Transform2D;
 
 /**
  * An effect sensed by Ernest after making a move in the environment.
@@ -53,6 +54,11 @@ public interface Effect
 	/**
 	 * @return The agent's movement during the scheme enaction.
 	 */
+	public Transform2D getTransform();
+
+	/**
+	 * @return The agent's movement during the scheme enaction, for the environments that use Java3D.
+	 */
 	public Transform3D getTransformation();
 	
 	/**
@@ -2,10 +2,9 @@ package ernest;
 
 
 import javax.media.j3d.Transform3D;
-import javax.vecmath.Matrix3f;
 import javax.vecmath.Point3f;
-import javax.vecmath.Vector3f;
 
+import eca.spas.Transform2D;
 import eca.ss.enaction.Act;
 
 import tracing.ITracer;
@@ -15,7 +14,7 @@ public class EffectImpl implements Effect
 {
 	private String m_label = "";
 	private Point3f m_location = new Point3f();
-	private Transform3D m_transformation = new Transform3D();
+	private Transform2D m_transformation = Transform2D.IDENTITY;
 	private int m_color = 0xFFFFFF;
 	private float m_angle =0;
 	private String enactedInteractionLabel;
@@ -57,16 +56,19 @@ public class EffectImpl implements Effect
 
 	public void setTransformation(float angle, float x) 
 	{
-		m_transformation.setIdentity();
 		m_angle = angle;
-		m_transformation.rotZ(angle);
-		m_transformation.setTranslation(new Vector3f(x,0,0));
+		m_transformation = new Transform2D(angle, x, 0);
 	}
 	
-	public Transform3D getTransformation() 
+	public Transform2D getTransform() 
 	{
 		return m_transformation;
 	}
+	
+	public Transform3D getTransformation() 
+	{
+		return ErnestUtils.toTransform3D(m_transformation);
+	}
 
 	public void setColor(int color)
 	{
@@ -87,13 +89,10 @@ public class EffectImpl implements Effect
 			tracer.addSubelement(e, "color", ErnestUtils.hexColor(m_color));
 			tracer.addSubelement(e, "position_x", ErnestUtils.format(m_location.x,0));
 			tracer.addSubelement(e, "position_y", ErnestUtils.format(m_location.y,0));
-			Matrix3f rot = new Matrix3f();
-			Vector3f trans = new Vector3f();
-			m_transformation.get(rot, trans);
-			tracer.addSubelement(e, "translation_x", ErnestUtils.format(trans.x,0));
-			tracer.addSubelement(e, "translation_y", ErnestUtils.format(trans.y,0));
+			tracer.addSubelement(e, "translation_x", ErnestUtils.format((float)m_transformation.getX(),0));
+			tracer.addSubelement(e, "translation_y", ErnestUtils.format((float)m_transformation.getY(),0));
 			//tracer.addSubelement(e, "rotation", m_angle +"");
-			tracer.addSubelement(e, "rotation", ErnestUtils.format((float) - Math.atan2(rot.m01,rot.m00),2));
+			tracer.addSubelement(e, "rotation", ErnestUtils.format((float) - Math.atan2((float)-m_transformation.getSin(), (float)m_transformation.getCos()),2));
 		}
 	}
 }
@@ -6,7 +6,9 @@ import java.util.List;
 import javax.media.j3d.Transform3D;
 import javax.vecmath.Point3f;
 import tracing.ITracer;
+import utils.ErnestUtils;
 import eca.ActInstance;
+import eca.AgentMemory;
 import eca.Primitive;
 import eca.PrimitiveImpl;
 import eca.construct.Action;
@@ -19,6 +21,9 @@ import eca.decider.Decider;
 import eca.spas.Placeable;
 import eca.spas.Spas;
 import eca.spas.SpasImpl;
+import eca.spas.SpatialMemory;
+import eca.spas.SpatialMemoryImpl;
+import eca.spas.Transform2D;
 import eca.ss.IImos;
 import eca.ss.Imos;
 import eca.ss.enaction.Act;
@@ -39,24 +44,44 @@ public class Ernest implements IErnest
 	/** Color unanimated */
 	public static int UNANIMATED_COLOR = 0x808080;
 
+	/** Ernest's memory (owned by this agent only). */
+	private AgentMemory m_memory = new AgentMemory();
+
 	/** Ernest's current enaction */
-	private Enaction m_enaction = new EnactionImpl();
+	private Enaction m_enaction = new EnactionImpl(m_memory);
 	
 	/** Ernest's spatial system. */
-	private Spas m_spas = new SpasImpl();
+	private Spas m_spas;
 
 	/** Ernest's Intrinsically motivated Schema Mechanism. */
-	private IImos m_imos = new Imos();
+	private IImos m_imos = new Imos(m_memory);
 	
 	/** Ernest's tracing system. */
 	private ITracer m_tracer = null;
 	
-	private static int clock = 0;
+	private int clock = 0;
 	
-	private Transform3D transformToAnim = new Transform3D();
+	private Transform2D transformToAnim = Transform2D.IDENTITY;
 	
 	/** Ernest's decisional Mechanism. */
-	private Decider m_decider = new DeciderImpl(m_imos, m_spas); // Regular decider for Ernest 7.
+	private Decider m_decider;
+	
+	/**
+	 * Create an Ernest agent with the default spatial memory.
+	 */
+	public Ernest()
+	{
+		this(new SpatialMemoryImpl());
+	}
+	
+	/**
+	 * @param spatialMemory The local space memory (for example an ArraySpatialMemory for large perceptions).
+	 */
+	public Ernest(SpatialMemory spatialMemory)
+	{
+		m_spas = new SpasImpl(m_memory, spatialMemory);
+		m_decider = new DeciderImpl(m_imos, m_spas, m_memory); // Regular decider for Ernest 7.
+	}
 	
 	/**
 	 * Set Ernest's fundamental learning parameters.
@@ -118,15 +143,23 @@ public class Ernest implements IErnest
 	}
 	
 	public Primitive step(List<ActInstance> actInstances, Transform3D transform){
+		return step(actInstances, ErnestUtils.toTransform2D(transform));
+	}
+	
+	public Primitive step(List<ActInstance> actInstances, Transform2D transform){
 		
 		// Trace a new interaction cycle.
 		if (m_tracer != null){
             m_tracer.startNewEvent(this.clock);
-			m_tracer.addEventElement("clock", this.clock + "");
-
-			Object ep = m_tracer.addEventElement("enacted_places");
-			for (ActInstance p : actInstances){
-				p.trace(m_tracer, ep);
+			if (m_tracer.accepts("clock"))
+				m_tracer.addEventElement("clock", this.clock + "");
+
+			if (m_tracer.accepts("enacted_places"))
+			{
+				Object ep = m_tracer.addEventElement("enacted_places");
+				for (ActInstance p : actInstances){
+					p.trace(m_tracer, ep);
+				}
 			}
 		}                
 
@@ -134,7 +167,7 @@ public class Ernest implements IErnest
 
 		// track the enaction 
 		
-		this.transformToAnim.set(transform);
+		this.transformToAnim = transform;
 		m_enaction.track(actInstances, transform, this.m_spas.getFocusPhenomenonInstance());
 		m_imos.track(m_enaction);
 		m_spas.track(m_enaction);			
@@ -161,9 +194,9 @@ public class Ernest implements IErnest
 
 	public Primitive addInteraction(String label, int value)
 	{
-		Primitive primitive = PrimitiveImpl.createOrGet(label, value * 10);
+		Primitive primitive = PrimitiveImpl.createOrGet(m_memory, label, value * 10);
 		
-		Act act = ActImpl.createOrGetPrimitiveAct(primitive, AreaImpl.createOrGet(new Point3f(0,0,0)));
+		Act act = ActImpl.createOrGetPrimitiveAct(m_memory, primitive, AreaImpl.createOrGet(new Point3f(0,0,0)));
 		//Action action = ActionImpl.createOrGet("[a" + act.getLabel() + "]");
 		//action.addAct(act);
 		return primitive;
@@ -184,7 +217,7 @@ public class Ernest implements IErnest
 
 	public Collection<Primitive> getPrimitives() 
 	{
-		return PrimitiveImpl.getINTERACTIONS();
+		return PrimitiveImpl.getINTERACTIONS(m_memory);
 	}
 	
 	/**
@@ -197,7 +230,14 @@ public class Ernest implements IErnest
 	}
 
 	public Transform3D getTransformToAnim() {
-		return this.transformToAnim;
+		return ErnestUtils.toTransform3D(this.transformToAnim);
+	}
+	
+	/**
+	 * @return Ernest's memory.
+	 */
+	public AgentMemory getMemory() {
+		return m_memory;
 	}
 		
 }
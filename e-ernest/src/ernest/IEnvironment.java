@@ -5,6 +5,7 @@ import javax.media.j3d.Transform3D;
 import tracing.ITracer;
 import eca.ActInstance;
 import eca.Primitive;
+import eca.spas.Transform2D;
 
 /**
  * Interface for an Environment suitable to Ernest.
@@ -32,5 +33,13 @@ public interface IEnvironment
 	 */
 	public void trace(ITracer tracer);
 	
+	/**
+	 * @return The transformation of the agent's surroundings during the last enaction.
+	 */
+	public Transform2D getTransform();
+	
+	/**
+	 * @return The same transformation, for the environments that use Java3D.
+	 */
 	public Transform3D getTransformation();
 }
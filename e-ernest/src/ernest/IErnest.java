@@ -7,6 +7,7 @@ import javax.media.j3d.Transform3D;
 import eca.ActInstance;
 import eca.Primitive;
 import eca.spas.Placeable;
+import eca.spas.Transform2D;
 import tracing.ITracer;
 
 
@@ -46,8 +47,22 @@ public interface IErnest
 	 */
 	public String step(Effect effect);
 	
+	/**
+	 * Run Ernest one step, for the environments that use Java3D.
+	 * @param actInstances The act instances enacted in the environment.
+	 * @param transform The transformation sensed in the environment (converted to a Transform2D).
+	 * @return The next primitive interaction to enact.
+	 */
 	public Primitive step(List<ActInstance> actInstances, Transform3D transform);
 	
+	/**
+	 * Run Ernest one step without the Java3D transformation.
+	 * @param actInstances The act instances enacted in the environment.
+	 * @param transform The transformation sensed in the environment.
+	 * @return The next primitive interaction to enact.
+	 */
+	public Primitive step(List<ActInstance> actInstances, Transform2D transform);
+	
 	/**
 	 * @param i x coordinate (0 = left, 2 = right)
 	 * @param j y coordinate (0 = ahead, 2 = behind)
@@ -84,7 +99,7 @@ public interface IErnest
 	public Collection<Primitive> getPrimitives();
 	
 	/**
-	 * @return The transformation of spatial memory to anim.
+	 * @return The transformation of spatial memory to anim, for the environments that use Java3D.
 	 */
 	public Transform3D getTransformToAnim();
 	
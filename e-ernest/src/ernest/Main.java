@@ -3,11 +3,11 @@ package ernest;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.media.j3d.Transform3D;
 
 import eca.ActInstance;
 import eca.Primitive;
 import tracing.ITracer;
+import utils.Log;
 import tracing.XMLStreamTracer;
 
 /**
@@ -73,7 +73,9 @@ public class Main
 		while (true)
 		{
 			////////// Insert a breakpoint below to easily follow Ernest in Eclipse debugger. ////// 
-			System.out.println("Step #" + iCycle++);
+			if (Log.isEnabled(Log.INFO))
+				Log.info("Step #", iCycle);
+			iCycle++;
 			sleep(100);
 			//////////////////////////////////////////////////////////////////////////////////////////
 			
@@ -82,7 +84,7 @@ public class Main
 			if (enactedActInstance != null)
 				actInstances.add(enactedActInstance);
 			
-			intendedInteracton = ernest.step(actInstances, environment.getTransformation());
+			intendedInteracton = ernest.step(actInstances, environment.getTransform());
 			environment.trace(tracer);
 			enactedActInstance = environment.enact(intendedInteracton);
 						
@@ -0,0 +1,162 @@
+package ernest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import eca.ActInstance;
+import eca.Primitive;
+
+/**
+ * Runs many Ernest agents in parallel, each in its own environment.
+ * Each agent is stepped by a single thread at a time, and agents do not share memory,
+ * so the agents are spread over a pool of threads (by default, one per available core).
+ * @author Olivier
+ */
+public class MultiAgentRunner
+{
+	private List<AgentRun> runs = new ArrayList<AgentRun>();
+	private int nbThreads;
+
+	/**
+	 * Create a runner that uses one thread per available core.
+	 */
+	public MultiAgentRunner()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param nbThreads The number of threads that step the agents.
+	 */
+	public MultiAgentRunner(int nbThreads)
+	{
+		this.nbThreads = nbThreads;
+	}
+
+	/**
+	 * Add an agent and its environment.
+	 * The agent must already be initialized in its environment (see IEnvironment.initErnest()).
+	 * @param ernest The agent.
+	 * @param environment The agent's environment.
+	 */
+	public void addAgent(IErnest ernest, IEnvironment environment)
+	{
+		runs.add(new AgentRun(ernest, environment));
+	}
+
+	/**
+	 * @return The number of agents.
+	 */
+	public int getNbAgents()
+	{
+		return runs.size();
+	}
+
+	/**
+	 * Step every agent a given number of cycles.
+	 * Agents continue from where the previous run left them.
+	 * @param nbCycles The number of cycles of each agent.
+	 * @return The aggregate number of cycles per second over all the agents.
+	 */
+	public float run(int nbCycles)
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(nbThreads, runs.size())));
+		long start = System.nanoTime();
+		long totalCycles = 0;
+		try
+		{
+			List<Future<Integer>> futures = new ArrayList<Future<Integer>>(runs.size());
+			for (AgentRun run : runs)
+			{
+				run.setNbCycles(nbCycles);
+				futures.add(executor.submit(run));
+			}
+			for (Future<Integer> future : futures)
+				totalCycles += future.get();
+		}
+		catch (InterruptedException ie)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException ee)
+		{
+			throw new RuntimeException("Agent failed", ee.getCause());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+		long duration = System.nanoTime() - start;
+		return duration > 0 ? totalCycles * 1e9f / duration : 0;
+	}
+
+	/**
+	 * An agent interacting with its environment.
+	 */
+	private static class AgentRun implements Callable<Integer>
+	{
+		private IErnest ernest;
+		private IEnvironment environment;
+		private ActInstance enactedActInstance = null;
+		private int nbCycles = 0;
+
+		AgentRun(IErnest ernest, IEnvironment environment)
+		{
+			this.ernest = ernest;
+			this.environment = environment;
+		}
+
+		void setNbCycles(int nbCycles)
+		{
+			this.nbCycles = nbCycles;
+		}
+
+		public Integer call()
+		{
+			int iCycle = 0;
+			while (iCycle < nbCycles && !Thread.currentThread().isInterrupted())
+			{
+				List<ActInstance> actInstances = new ArrayList<ActInstance>(1);
+				if (enactedActInstance != null)
+					actInstances.add(enactedActInstance);
+
+				Primitive intendedInteraction = ernest.step(actInstances, environment.getTransform());
+				enactedActInstance = environment.enact(intendedInteraction);
+				iCycle++;
+			}
+			return iCycle;
+		}
+	}
+
+	/**
+	 * Run agents in parallel and print the aggregate speed.
+	 * @param args [number of agents] [number of cycles per agent] [number of threads] [roesch|maze]
+	 */
+	public static void main(String[] args)
+	{
+		int nbThreads = Runtime.getRuntime().availableProcessors();
+		int nbAgents = args.length > 0 ? Integer.parseInt(args[0]) : nbThreads;
+		int nbCycles = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		if (args.length > 2)
+			nbThreads = Integer.parseInt(args[2]);
+		boolean maze = args.length > 3 && args[3].equals("maze");
+
+		MultiAgentRunner runner = new MultiAgentRunner(nbThreads);
+		for (int i = 0; i < nbAgents; i++)
+		{
+			IEnvironment environment = maze ? new SimpleMaze() : new Roesch2();
+			IErnest ernest = new Ernest();
+			ernest.setParameters(6, 10);
+			environment.initErnest(ernest);
+			runner.addAgent(ernest, environment);
+		}
+
+		float cyclesPerSecond = runner.run(nbCycles);
+		System.out.println(nbAgents + " agents, " + nbCycles + " cycles each, " + nbThreads + " threads: " + Math.round(cyclesPerSecond) + " cycles/s");
+	}
+}
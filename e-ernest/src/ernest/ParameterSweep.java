@@ -0,0 +1,288 @@
+package ernest;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs Ernest with many configurations of its learning parameters in parallel.
+ * A configuration is a regularity threshold, a maximum schema length, and an environment.
+ * Each configuration runs on its own agent, by chunks of cycles.
+ * A configuration stops early when the mean satisfaction of its last chunks has plateaued.
+ * The result of each configuration is printed as a row of a tab-separated table as soon as it stops.
+ * @author Olivier
+ */
+public class ParameterSweep
+{
+	/** Status of a configuration stopped because its satisfaction has plateaued */
+	public static String STATUS_PLATEAU = "plateau";
+	/** Status of a configuration that ran all its cycles */
+	public static String STATUS_DONE = "done";
+
+	private List<Configuration> configurations = new ArrayList<Configuration>();
+
+	private int nbThreads = Runtime.getRuntime().availableProcessors();
+	private int maxCycles = 10000;
+	private int chunkCycles = 500;
+	private int plateauChunks = 4;
+	private float plateauTolerance = 0.05f;
+
+	/**
+	 * Add all the combinations of the given values.
+	 * @param regularityThresholds The regularity thresholds.
+	 * @param maxSchemaLengths The maximum schema lengths.
+	 * @param environments The environment class names (see BatchRunner.createEnvironment()).
+	 */
+	public void addGrid(int[] regularityThresholds, int[] maxSchemaLengths, String[] environments)
+	{
+		for (String environment : environments)
+			for (int regularityThreshold : regularityThresholds)
+				for (int maxSchemaLength : maxSchemaLengths)
+					configurations.add(new Configuration(regularityThreshold, maxSchemaLength, environment));
+	}
+
+	/**
+	 * Add configurations drawn at random.
+	 * @param nbConfigurations The number of configurations to draw.
+	 * @param minRegularityThreshold The minimum regularity threshold.
+	 * @param maxRegularityThreshold The maximum regularity threshold.
+	 * @param minSchemaLength The minimum of the maximum schema length.
+	 * @param maxSchemaLength The maximum of the maximum schema length.
+	 * @param environments The environment class names.
+	 * @param seed The seed of the random draw (the same seed gives the same configurations).
+	 */
+	public void addRandomSample(int nbConfigurations, int minRegularityThreshold, int maxRegularityThreshold,
+			int minSchemaLength, int maxSchemaLength, String[] environments, long seed)
+	{
+		Random random = new Random(seed);
+		for (int i = 0; i < nbConfigurations; i++)
+			configurations.add(new Configuration(
+					minRegularityThreshold + random.nextInt(maxRegularityThreshold - minRegularityThreshold + 1),
+					minSchemaLength + random.nextInt(maxSchemaLength - minSchemaLength + 1),
+					environments[random.nextInt(environments.length)]));
+	}
+
+	/**
+	 * @param nbThreads The number of threads that run the configurations.
+	 */
+	public void setNbThreads(int nbThreads)
+	{
+		this.nbThreads = nbThreads;
+	}
+
+	/**
+	 * @param maxCycles The maximum number of cycles of each configuration.
+	 * @param chunkCycles The number of cycles between two plateau checks.
+	 * @throws IllegalArgumentException if maxCycles or chunkCycles is not positive.
+	 */
+	public void setCycles(int maxCycles, int chunkCycles)
+	{
+		if (maxCycles <= 0 || chunkCycles <= 0)
+			throw new IllegalArgumentException("The numbers of cycles must be positive: " + maxCycles + ", " + chunkCycles);
+		this.maxCycles = maxCycles;
+		this.chunkCycles = chunkCycles;
+	}
+
+	/**
+	 * A configuration has plateaued when the mean satisfactions of its last chunks
+	 * are all within the tolerance of each other.
+	 * @param plateauChunks The number of chunks compared.
+	 * @param plateauTolerance The tolerance on the mean satisfaction.
+	 * @throws IllegalArgumentException if fewer than two chunks are compared or if the tolerance is negative.
+	 */
+	public void setPlateau(int plateauChunks, float plateauTolerance)
+	{
+		if (plateauChunks < 2 || !(plateauTolerance >= 0))
+			throw new IllegalArgumentException("At least two chunks and a tolerance of zero or more are needed: " + plateauChunks + ", " + plateauTolerance);
+		this.plateauChunks = plateauChunks;
+		this.plateauTolerance = plateauTolerance;
+	}
+
+	/**
+	 * @return The number of configurations.
+	 */
+	public int getNbConfigurations()
+	{
+		return configurations.size();
+	}
+
+	/**
+	 * Run all the configurations and print their results to the output as they complete.
+	 * @param out The output of the result table.
+	 */
+	public void run(PrintStream out)
+	{
+		synchronized (out)
+		{
+			out.println("environment\tregularity\tmaxLength\tcycles\tcycles/s\tsatisfaction\tacts\tstatus");
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, nbThreads));
+		try
+		{
+			List<Future<String>> futures = new ArrayList<Future<String>>(configurations.size());
+			for (Configuration configuration : configurations)
+				futures.add(executor.submit(new ConfigurationRun(configuration, out)));
+			for (Future<String> future : futures)
+				future.get();
+		}
+		catch (InterruptedException ie)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException ee)
+		{
+			throw new RuntimeException("Configuration failed", ee.getCause());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * The learning parameters and the environment of one run.
+	 */
+	public static class Configuration
+	{
+		private int regularityThreshold;
+		private int maxSchemaLength;
+		private String environment;
+
+		/**
+		 * @param regularityThreshold The regularity threshold.
+		 * @param maxSchemaLength The maximum schema length.
+		 * @param environment The environment class name.
+		 */
+		public Configuration(int regularityThreshold, int maxSchemaLength, String environment)
+		{
+			this.regularityThreshold = regularityThreshold;
+			this.maxSchemaLength = maxSchemaLength;
+			this.environment = environment;
+		}
+
+		/**
+		 * @return The regularity threshold.
+		 */
+		public int getRegularityThreshold()
+		{
+			return regularityThreshold;
+		}
+
+		/**
+		 * @return The maximum schema length.
+		 */
+		public int getMaxSchemaLength()
+		{
+			return maxSchemaLength;
+		}
+
+		/**
+		 * @return The environment class name.
+		 */
+		public String getEnvironment()
+		{
+			return environment;
+		}
+	}
+
+	/**
+	 * Runs a configuration by chunks until it plateaus or reaches the maximum number of cycles.
+	 */
+	private class ConfigurationRun implements Callable<String>
+	{
+		private Configuration configuration;
+		private PrintStream out;
+
+		ConfigurationRun(Configuration configuration, PrintStream out)
+		{
+			this.configuration = configuration;
+			this.out = out;
+		}
+
+		public String call()
+		{
+			BatchRunner runner = new BatchRunner(BatchRunner.createEnvironment(configuration.getEnvironment()),
+					configuration.getRegularityThreshold(), configuration.getMaxSchemaLength());
+			LinkedList<Float> satisfactions = new LinkedList<Float>();
+			String status = STATUS_DONE;
+			while (runner.getNbCycles() < maxCycles && !Thread.currentThread().isInterrupted())
+			{
+				runner.run(Math.min(chunkCycles, maxCycles - runner.getNbCycles()), 0);
+				satisfactions.addLast(runner.getLastMeanSatisfaction());
+				if (satisfactions.size() > plateauChunks)
+					satisfactions.removeFirst();
+				if (satisfactions.size() == plateauChunks && isPlateau(satisfactions))
+				{
+					status = STATUS_PLATEAU;
+					break;
+				}
+			}
+
+			// No chunk was run if the sweep was interrupted before the first one.
+			String satisfaction = satisfactions.isEmpty() ? "NaN" : satisfactions.getLast().toString();
+			String row = configuration.getEnvironment()
+				+ "\t" + configuration.getRegularityThreshold()
+				+ "\t" + configuration.getMaxSchemaLength()
+				+ "\t" + runner.getNbCycles()
+				+ "\t" + Math.round(runner.getCyclesPerSecond())
+				+ "\t" + satisfaction
+				+ "\t" + runner.getNbActsLearned()
+				+ "\t" + status;
+			synchronized (out)
+			{
+				out.println(row);
+			}
+			return row;
+		}
+
+		private boolean isPlateau(List<Float> satisfactions)
+		{
+			float min = Float.MAX_VALUE;
+			float max = -Float.MAX_VALUE;
+			for (float s : satisfactions)
+			{
+				min = Math.min(min, s);
+				max = Math.max(max, s);
+			}
+			return max - min <= plateauTolerance;
+		}
+	}
+
+	/**
+	 * Run a sweep and print the result table.
+	 * Without arguments, runs the grid of regularity thresholds {2, 4, 6, 8, 10} x max schema lengths {4, 6, 8, 10}
+	 * on Roesch2 and SimpleMaze.
+	 * With arguments, runs a random sample of regularity thresholds 2..10 x max schema lengths 4..10:
+	 * [number of configurations] [seed] [max cycles].
+	 * @param args The arguments.
+	 */
+	public static void main(String[] args)
+	{
+		String[] environments = {"Roesch2", "SimpleMaze"};
+		ParameterSweep sweep = new ParameterSweep();
+		if (args.length == 0)
+			sweep.addGrid(new int[]{2, 4, 6, 8, 10}, new int[]{4, 6, 8, 10}, environments);
+		else
+			sweep.addRandomSample(Integer.parseInt(args[0]), 2, 10, 4, 10, environments,
+					args.length > 1 ? Long.parseLong(args[1]) : 0);
+		if (args.length > 2)
+		{
+			int maxCycles = Integer.parseInt(args[2]);
+			if (maxCycles <= 0)
+			{
+				System.out.println("The number of cycles must be positive: " + maxCycles);
+				return;
+			}
+			sweep.setCycles(maxCycles, 500);
+		}
+
+		sweep.run(System.out);
+	}
+}
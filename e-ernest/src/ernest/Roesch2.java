@@ -8,7 +8,10 @@ import eca.Primitive;
 import eca.PrimitiveImpl;
 import eca.construct.egomem.Aspect;
 import eca.construct.egomem.AspectImpl;
+import eca.spas.Transform2D;
 import tracing.ITracer;
+import utils.ErnestUtils;
+import utils.Log;
 
 /**
  * This class implements the environment proposed by Roesch et al. in 
@@ -21,7 +24,7 @@ public class Roesch2 implements IEnvironment
 {
 	private static final int WIDTH = 10;	
 	private int position = 0;
-	private Transform3D transform = new Transform3D();
+	private Transform2D transform = Transform2D.IDENTITY;
 	
 	private int[] board = {6, 3, 5, 4, 7, 3, 5, 3, 9, 5};	
 
@@ -135,23 +138,26 @@ public class Roesch2 implements IEnvironment
 		else if (s.equals("i"))
 			effect = swap();
 		
-		System.out.println("enacted " + s + effect.getLabel());
-		printEnv();
+		if (Log.isEnabled(Log.DEBUG)){
+			Log.debug("enacted " + s + effect.getLabel());
+			printEnv();
+		}
 		return effect;
 	}
 	
 	private void printEnv(){
 		// print the board
+		StringBuilder env = new StringBuilder();
 		for (int i = 0; i < WIDTH; i++)
-			System.out.print(board[i] + " ");
-		System.out.println();
+			env.append(board[i]).append(' ');
+		env.append('\n');
 
 		// print the agent
 		for (int i = 0; i < position; i++)
-			System.out.print("  ");
-		System.out.print(">");
+			env.append("  ");
+		env.append('>');
 
-		System.out.println();
+		Log.debug(env.toString());
 	}
 
 	public void initErnest(IErnest ernest) {
@@ -182,17 +188,21 @@ public class Roesch2 implements IEnvironment
 
 	public ActInstance enact(Primitive primitive) {
 		Effect effect = enact(primitive.getLabel().substring(0,1));
-		Primitive enactedPrimitive = PrimitiveImpl.createOrGet(primitive.getLabel().substring(0,1) + effect.getLabel(), 0);
+		Primitive enactedPrimitive = PrimitiveImpl.create(primitive.getLabel().substring(0,1) + effect.getLabel(), 0);
 		//ActInstance enactedActInstance = new ActInstanceImpl(enactedPrimitive, effect.getLocation());
 		ActInstance enactedActInstance = new ActInstanceImpl(enactedPrimitive, new Point3f());
 		Aspect aspect = AspectImpl.createOrGet(effect.getColor());
 		enactedActInstance.setAspect(aspect);
-		this.transform = effect.getTransformation();
+		this.transform = effect.getTransform();
 		return enactedActInstance;
 	}
 
-	public Transform3D getTransformation(){
+	public Transform2D getTransform(){
 		return this.transform;
 	}
 
+	public Transform3D getTransformation(){
+		return ErnestUtils.toTransform3D(this.transform);
+	}
+
 }
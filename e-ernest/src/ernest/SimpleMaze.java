@@ -4,12 +4,15 @@ import javax.media.j3d.Transform3D;
 import javax.vecmath.Point3f;
 
 import tracing.ITracer;
+import utils.ErnestUtils;
+import utils.Log;
 
 import eca.ActInstance;
 import eca.ActInstanceImpl;
 import eca.Primitive;
 import eca.PrimitiveImpl;
 import eca.construct.egomem.AspectImpl;
+import eca.spas.Transform2D;
 
 /**
  * This class implements the Small Loop Environment
@@ -30,7 +33,7 @@ public class SimpleMaze implements IEnvironment
 	private static final int ORIENTATION_DOWN  = 2;
 	private static final int ORIENTATION_LEFT  = 3;
 	
-	private Transform3D transform = new Transform3D();
+	private Transform2D transform = Transform2D.IDENTITY;
 
 	// The Small Loop Environment
 	
@@ -81,10 +84,10 @@ public class SimpleMaze implements IEnvironment
 	 */
 	public ActInstance enact(Primitive intendedPrimitive){
 		Effect effect = enact(intendedPrimitive.getLabel());
-		Primitive enactedPrimitive = PrimitiveImpl.createOrGet(intendedPrimitive.getLabel().substring(0,1) + effect.getLabel(), 0);
+		Primitive enactedPrimitive = PrimitiveImpl.create(intendedPrimitive.getLabel().substring(0,1) + effect.getLabel(), 0);
 		ActInstance enactedActInstance = new ActInstanceImpl(enactedPrimitive, effect.getLocation());		
 		enactedActInstance.setAspect(AspectImpl.createOrGet(effect.getColor()));
-		this.transform = effect.getTransformation();
+		this.transform = effect.getTransform();
 		return enactedActInstance;
 	}
 
@@ -107,16 +110,22 @@ public class SimpleMaze implements IEnvironment
 			effect = TouchLeft();
 		
 		// print the maze
-		for (int i = 0; i < HEIGHT; i++)
+		if (Log.isEnabled(Log.DEBUG))
 		{
-			for (int j = 0; j < WIDTH; j++)
+			StringBuilder maze = new StringBuilder();
+			for (int i = 0; i < HEIGHT; i++)
 			{
-				if (i == m_y && j== m_x)
-					System.out.print(m_agent[m_o]);
-				else
-					System.out.print(m_board[i][j]);	
+				for (int j = 0; j < WIDTH; j++)
+				{
+					if (i == m_y && j== m_x)
+						maze.append(m_agent[m_o]);
+					else
+						maze.append(m_board[i][j]);	
+				}
+				if (i < HEIGHT - 1)
+					maze.append('\n');
 			}
-			System.out.println();
+			Log.debug(maze.toString());
 		}
 		
 		return effect;
@@ -316,8 +325,12 @@ public class SimpleMaze implements IEnvironment
 		
 	}
 	
-	public Transform3D getTransformation(){
+	public Transform2D getTransform(){
 		return this.transform;
 	}
 
+	public Transform3D getTransformation(){
+		return ErnestUtils.toTransform3D(this.transform);
+	}
+
 }
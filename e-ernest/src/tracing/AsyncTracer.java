@@ -0,0 +1,473 @@
+package tracing;
+
+import java.util.concurrent.locks.LockSupport;
+
+import utils.Log;
+
+/**
+ * A tracer that records the trace calls into a preallocated ring buffer
+ * and replays them on another tracer in a background thread.
+ * The agent's cycle thus does not wait for the trace to be serialized, written or posted.
+ * The elements returned to the agent are handles that stand for the elements that the other tracer will create.
+ * A small handle is allocated for each element created (the other calls allocate nothing).
+ * A handle remains valid while fewer than HANDLE_CAPACITY elements are created after it:
+ * the calls made with an older handle are dropped and counted (see getDroppedCalls()).
+ * If the tracer that receives the trace throws an Error, the trace is dropped from then on and close() returns false.
+ * Closing is final: the calls made after close() are dropped.
+ * This tracer must be fed by a single thread (the thread that steps the agent).
+ * When the buffer is full, the backpressure policy decides whether the agent waits,
+ * drops the rest of the current event, or samples the events.
+ * @author Olivier
+ * @param <E> The element type of the tracer that receives the trace.
+ */
+public class AsyncTracer<E> implements ITracer<Object>
+{
+	/** The agent waits until there is room in the buffer. */
+	public static final int BLOCK = 0;
+	/** The rest of the event that overflows the buffer is dropped. */
+	public static final int DROP = 1;
+	/** When the buffer is more than half full, only one event out of the sample rate is kept (the others are dropped). */
+	public static final int SAMPLE = 2;
+
+	/** Number of elements created after a handle from which the handle is no longer valid. */
+	public static final int HANDLE_CAPACITY = 1 << 14;
+
+	private static final int OP_START_EVENT = 0;
+	private static final int OP_FINISH_EVENT = 1;
+	private static final int OP_EVENT_ELEMENT = 2;
+	private static final int OP_EVENT_ELEMENT_VALUE = 3;
+	private static final int OP_SUBELEMENT = 4;
+	private static final int OP_SUBELEMENT_VALUE = 5;
+	private static final int OP_NEW_EVENT = 6;
+
+	private static final long WAIT_NANOS = 100000;
+
+	private final ITracer<E> tracer;
+	private final int policy;
+	private final int sampleRate;
+
+	/** The ring buffer of recorded calls */
+	private final Slot[] slots;
+	private final int mask;
+	/** Number of calls recorded (written by the agent thread only) */
+	private volatile long head = 0;
+	/** Number of calls replayed (written by the background thread only) */
+	private volatile long tail = 0;
+
+	/** Identifier of the next element handle (agent thread only) */
+	private long nextId = 1;
+	/** True while the calls of the current event are dropped (agent thread only) */
+	private boolean dropping = false;
+	private volatile long droppedEvents = 0;
+	/** Number of calls dropped because they used a stale handle (agent thread only) */
+	private volatile long droppedCalls = 0;
+	/** True once a call made after close() has been reported (agent thread only) */
+	private boolean callAfterClose = false;
+
+	/** The elements created by the tracer, indexed by handle id (background thread only) */
+	private final long[] elementIds = new long[HANDLE_CAPACITY];
+	private final Object[] elements = new Object[HANDLE_CAPACITY];
+
+	private volatile boolean closed = false;
+	private volatile boolean closeResult = false;
+	/** The error that stopped the background thread (null if none) */
+	private volatile Throwable failure = null;
+	private final Thread consumer;
+
+	/**
+	 * Create an asynchronous tracer that blocks the agent when the buffer is full.
+	 * @param tracer The tracer that receives the trace.
+	 */
+	public AsyncTracer(ITracer<E> tracer)
+	{
+		this(tracer, 1 << 16, BLOCK, 1);
+	}
+
+	/**
+	 * @param tracer The tracer that receives the trace.
+	 * @param capacity The number of calls that the buffer can hold (rounded up to a power of two).
+	 * @param policy The backpressure policy: BLOCK, DROP or SAMPLE.
+	 * @param sampleRate With the SAMPLE policy, one event out of sampleRate is kept under pressure.
+	 */
+	public AsyncTracer(ITracer<E> tracer, int capacity, int policy, int sampleRate)
+	{
+		if (policy < BLOCK || policy > SAMPLE)
+			throw new IllegalArgumentException("Unknown backpressure policy " + policy);
+		this.tracer = tracer;
+		this.policy = policy;
+		this.sampleRate = Math.max(1, sampleRate);
+
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		slots = new Slot[size];
+		for (int i = 0; i < size; i++)
+			slots[i] = new Slot();
+		mask = size - 1;
+
+		consumer = new Thread(new Runnable(){
+			public void run() {
+				consume();
+			}
+		}, "AsyncTracer");
+		consumer.setDaemon(true);
+		consumer.start();
+	}
+
+	/**
+	 * @return The number of events that were partly or totally dropped by the backpressure policy.
+	 */
+	public long getDroppedEvents()
+	{
+		return droppedEvents;
+	}
+
+	/**
+	 * @return The number of calls that were dropped because their element handle was stale.
+	 */
+	public long getDroppedCalls()
+	{
+		return droppedCalls;
+	}
+
+	/**
+	 * @return The error thrown by the tracer that receives the trace, or null if none.
+	 */
+	public Throwable getFailure()
+	{
+		return failure;
+	}
+
+	/**
+	 * Wait until every recorded call has been replayed, then close the tracer that receives the trace.
+	 * The tracer cannot be reopened: the calls made after close() are dropped.
+	 * @return The result of closing the tracer that receives the trace, false if it failed.
+	 */
+	public boolean close()
+	{
+		if (!closed)
+		{
+			closed = true;
+			LockSupport.unpark(consumer);
+			try
+			{
+				consumer.join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			if (failure != null)
+				Log.error("The trace was dropped after an error of the tracer: " + failure);
+		}
+		return closeResult && failure == null;
+	}
+
+	public void startNewEvent(int t)
+	{
+		dropping = false;
+		if (policy == SAMPLE && t % sampleRate != 0 && head - tail > slots.length / 2)
+		{
+			dropping = true;
+			droppedEvents++;
+		}
+		Slot slot = claim();
+		if (slot != null)
+		{
+			slot.op = OP_START_EVENT;
+			slot.t = t;
+			publish();
+		}
+		// Wake up the consumer once per event
+		LockSupport.unpark(consumer);
+	}
+
+	public void finishEvent()
+	{
+		Slot slot = claim();
+		if (slot != null)
+		{
+			slot.op = OP_FINISH_EVENT;
+			publish();
+		}
+	}
+
+	public Object addEventElement(String name)
+	{
+		return addEventElement(name, true);
+	}
+
+	public Object addEventElement(String name, boolean display)
+	{
+		if (!tracer.accepts(name))
+			return null;
+		Handle handle = new Handle(nextId++);
+		Slot slot = claim();
+		if (slot != null)
+		{
+			slot.op = OP_EVENT_ELEMENT;
+			slot.id = handle.id;
+			slot.name = name;
+			slot.display = display;
+			publish();
+		}
+		return handle;
+	}
+
+	public void addEventElement(String name, String value)
+	{
+		if (!tracer.accepts(name))
+			return;
+		Slot slot = claim();
+		if (slot != null)
+		{
+			slot.op = OP_EVENT_ELEMENT_VALUE;
+			slot.name = name;
+			slot.value = value;
+			publish();
+		}
+	}
+
+	public Object addSubelement(Object element, String name)
+	{
+		if (element == null || !tracer.accepts(name) || isStale(element))
+			return null;
+		Handle handle = new Handle(nextId++);
+		Slot slot = claim();
+		if (slot != null)
+		{
+			slot.op = OP_SUBELEMENT;
+			slot.id = handle.id;
+			slot.parentId = parentId(element);
+			slot.name = name;
+			publish();
+		}
+		return handle;
+	}
+
+	public void addSubelement(Object element, String name, String textContent)
+	{
+		if (element == null || !tracer.accepts(name) || isStale(element))
+			return;
+		Slot slot = claim();
+		if (slot != null)
+		{
+			slot.op = OP_SUBELEMENT_VALUE;
+			slot.parentId = parentId(element);
+			slot.name = name;
+			slot.value = textContent;
+			publish();
+		}
+	}
+
+	public Object newEvent(String source, String type, int t)
+	{
+		dropping = false;
+		Handle handle = new Handle(nextId++);
+		Slot slot = claim();
+		if (slot != null)
+		{
+			slot.op = OP_NEW_EVENT;
+			slot.id = handle.id;
+			slot.name = source;
+			slot.value = type;
+			slot.t = t;
+			publish();
+		}
+		LockSupport.unpark(consumer);
+		return handle;
+	}
+
+	/**
+	 * Asks the tracer that receives the trace (its filter should not change while the agent runs).
+	 */
+	public boolean accepts(String name)
+	{
+		return tracer.accepts(name);
+	}
+
+	/**
+	 * The value is computed in the agent's thread because it may depend on the agent's state.
+	 */
+	public void addEventElement(String name, ITraceValue value)
+	{
+		if (tracer.accepts(name))
+			addEventElement(name, value.getTraceValue());
+	}
+
+	public void addSubelement(Object element, String name, ITraceValue value)
+	{
+		if (element != null && tracer.accepts(name))
+			addSubelement(element, name, value.getTraceValue());
+	}
+
+	private long parentId(Object element)
+	{
+		return element instanceof Handle ? ((Handle)element).id : 0;
+	}
+
+	/**
+	 * @return true if HANDLE_CAPACITY elements or more were created after this element (the call is then counted as dropped).
+	 */
+	private boolean isStale(Object element)
+	{
+		if (element instanceof Handle && nextId - ((Handle)element).id > HANDLE_CAPACITY)
+		{
+			droppedCalls++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return The slot in which to record the next call, or null if the call is dropped.
+	 */
+	private Slot claim()
+	{
+		if (closed && !callAfterClose)
+		{
+			callAfterClose = true;
+			Log.warn("The asynchronous tracer is closed: the next calls are dropped");
+		}
+		if (dropping || closed || failure != null)
+			return null;
+		while (head - tail >= slots.length)
+		{
+			if (policy != BLOCK || failure != null)
+			{
+				dropping = true;
+				droppedEvents++;
+				return null;
+			}
+			LockSupport.unpark(consumer);
+			LockSupport.parkNanos(WAIT_NANOS);
+		}
+		return slots[(int)head & mask];
+	}
+
+	private void publish()
+	{
+		head = head + 1;
+	}
+
+	private void consume()
+	{
+		while (true)
+		{
+			long available = head;
+			if (tail == available)
+			{
+				if (closed && tail == head)
+					break;
+				LockSupport.parkNanos(WAIT_NANOS * 10);
+				continue;
+			}
+			while (tail < available)
+			{
+				Slot slot = slots[(int)tail & mask];
+				try
+				{
+					replay(slot);
+				}
+				catch (RuntimeException e)
+				{
+					e.printStackTrace();
+				}
+				catch (Throwable e)
+				{
+					// The tracer is in an unknown state: stop replaying, so that the agent does not wait for this thread.
+					failure = e;
+					return;
+				}
+				slot.name = null;
+				slot.value = null;
+				tail = tail + 1;
+			}
+		}
+		try
+		{
+			closeResult = tracer.close();
+		}
+		catch (Throwable e)
+		{
+			failure = e;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void replay(Slot slot)
+	{
+		switch (slot.op)
+		{
+			case OP_START_EVENT:
+				tracer.startNewEvent(slot.t);
+				break;
+			case OP_FINISH_EVENT:
+				tracer.finishEvent();
+				break;
+			case OP_EVENT_ELEMENT:
+				store(slot.id, tracer.addEventElement(slot.name, slot.display));
+				break;
+			case OP_EVENT_ELEMENT_VALUE:
+				tracer.addEventElement(slot.name, slot.value);
+				break;
+			case OP_SUBELEMENT:
+				if (isKnown(slot.parentId))
+					store(slot.id, tracer.addSubelement((E)element(slot.parentId), slot.name));
+				break;
+			case OP_SUBELEMENT_VALUE:
+				if (isKnown(slot.parentId))
+					tracer.addSubelement((E)element(slot.parentId), slot.name, slot.value);
+				break;
+			case OP_NEW_EVENT:
+				store(slot.id, tracer.newEvent(slot.name, slot.value, slot.t));
+				break;
+		}
+	}
+
+	private void store(long id, Object element)
+	{
+		int i = (int)id & (HANDLE_CAPACITY - 1);
+		elementIds[i] = id;
+		elements[i] = element;
+	}
+
+	/**
+	 * @param id The handle id.
+	 * @return false if the element was dropped or its handle is too old.
+	 */
+	private boolean isKnown(long id)
+	{
+		return elementIds[(int)id & (HANDLE_CAPACITY - 1)] == id;
+	}
+
+	private Object element(long id)
+	{
+		return elements[(int)id & (HANDLE_CAPACITY - 1)];
+	}
+
+	/**
+	 * A recorded call.
+	 */
+	private static final class Slot
+	{
+		int op;
+		long id;
+		long parentId;
+		String name;
+		String value;
+		int t;
+		boolean display;
+	}
+
+	/**
+	 * Stands for an element that the tracer will create.
+	 */
+	private static final class Handle
+	{
+		final long id;
+
+		Handle(long id)
+		{
+			this.id = id;
+		}
+	}
+}
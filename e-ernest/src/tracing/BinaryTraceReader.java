@@ -0,0 +1,273 @@
+package tracing;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a trace written by BinaryTracer and replays it on another tracer,
+ * for example an XMLTracer or a StreamingXMLTracer to obtain the XML format, or a Tracer to obtain the text format.
+ * The replay can start at any clock value thanks to the index file.
+ * @author Olivier
+ */
+public class BinaryTraceReader
+{
+	private String m_fileName;
+	private List<String> m_dictionary = new ArrayList<String>();
+	private long m_firstClock = -1;
+	private long m_nbIndexed = 0;
+
+	private FileInputStream m_file;
+	private DataInputStream m_in;
+	private byte[] m_record = new byte[256];
+	private int m_position;
+	private int m_length;
+
+	/**
+	 * Open a binary trace and load its dictionary.
+	 * @param fileName The name of the trace file.
+	 * @throws IOException if the trace or its dictionary cannot be read.
+	 */
+	public BinaryTraceReader(String fileName) throws IOException
+	{
+		m_fileName = fileName;
+
+		DataInputStream dictionary = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName + ".dict")));
+		try
+		{
+			while (true)
+			{
+				int length = readVarint(dictionary);
+				if (length < 0)
+					break;
+				byte[] bytes = new byte[length];
+				dictionary.readFully(bytes);
+				m_dictionary.add(new String(bytes, "UTF-8"));
+			}
+		}
+		finally
+		{
+			dictionary.close();
+		}
+
+		File index = new File(fileName + ".idx");
+		if (index.length() >= 12)
+		{
+			DataInputStream in = new DataInputStream(new FileInputStream(index));
+			try
+			{
+				if (in.readInt() == BinaryTracer.MAGIC)
+				{
+					m_firstClock = in.readLong();
+					m_nbIndexed = (index.length() - 12) / 8;
+				}
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+
+		open(8);
+		// Check the header
+		DataInputStream header = new DataInputStream(new FileInputStream(fileName));
+		try
+		{
+			if (header.readInt() != BinaryTracer.MAGIC || header.readInt() != BinaryTracer.VERSION)
+				throw new IOException(fileName + " is not a binary trace of version " + BinaryTracer.VERSION);
+		}
+		finally
+		{
+			header.close();
+		}
+	}
+
+	/**
+	 * Position the reader on the event of a clock value.
+	 * @param clock The clock value.
+	 * @return false if the clock value is not in the index.
+	 * @throws IOException if the index cannot be read.
+	 */
+	public boolean seek(int clock) throws IOException
+	{
+		if (m_firstClock < 0 || clock < m_firstClock || clock >= m_firstClock + m_nbIndexed)
+			return false;
+		RandomAccessFile index = new RandomAccessFile(m_fileName + ".idx", "r");
+		long offset;
+		try
+		{
+			index.seek(12 + (clock - m_firstClock) * 8);
+			offset = index.readLong();
+		}
+		finally
+		{
+			index.close();
+		}
+		open(offset);
+		return true;
+	}
+
+	/**
+	 * Replay the events from the current position on a tracer.
+	 * @param tracer The tracer that receives the events.
+	 * @param lastClock The clock value after which the replay stops (-1 to replay until the end).
+	 * @return The number of events replayed.
+	 * @throws IOException if the trace cannot be read.
+	 */
+	public <E> int replay(ITracer<E> tracer, int lastClock) throws IOException
+	{
+		int nbEvents = 0;
+		List<E> elements = new ArrayList<E>();
+		while (true)
+		{
+			int length = readVarint(m_in);
+			if (length < 0)
+				break;
+			if (m_record.length < length)
+				m_record = new byte[Math.max(length, m_record.length * 2)];
+			m_in.readFully(m_record, 0, length);
+			m_position = 0;
+			m_length = length;
+
+			int kind = nextVarint();
+			int zigzag = nextVarint();
+			int clock = (zigzag >>> 1) ^ -(zigzag & 1);
+			if (kind == BinaryTracer.RECORD_EVENT && lastClock >= 0 && clock > lastClock)
+				break;
+
+			elements.clear();
+			if (kind == BinaryTracer.RECORD_EVENT)
+			{
+				tracer.startNewEvent(clock);
+				elements.add(null);
+			}
+			else
+			{
+				String source = nextString();
+				String type = nextString();
+				elements.add(tracer.newEvent(source, type, clock));
+			}
+
+			while (m_position < m_length)
+			{
+				int call = nextVarint();
+				int parent = call >>> 1;
+				String name = nextString();
+				if ((call & 1) != 0)
+				{
+					String value = nextString();
+					if (parent == 0 && kind == BinaryTracer.RECORD_EVENT)
+						tracer.addEventElement(name, value);
+					else
+						tracer.addSubelement(elements.get(parent), name, value);
+				}
+				else if (parent == 0 && kind == BinaryTracer.RECORD_EVENT)
+					elements.add(tracer.addEventElement(name));
+				else
+					elements.add(tracer.addSubelement(elements.get(parent), name));
+				// The calls with a value create no element that can be referenced
+				if ((call & 1) != 0)
+					elements.add(null);
+			}
+			nbEvents++;
+		}
+		return nbEvents;
+	}
+
+	public void close() throws IOException
+	{
+		m_in.close();
+	}
+
+	private void open(long offset) throws IOException
+	{
+		if (m_file != null)
+			m_file.close();
+		m_file = new FileInputStream(m_fileName);
+		m_file.getChannel().position(offset);
+		m_in = new DataInputStream(new BufferedInputStream(m_file, 1 << 16));
+	}
+
+	private String nextString() throws IOException
+	{
+		int id = nextVarint();
+		if (id > 0)
+			return m_dictionary.get(id - 1);
+		int length = nextVarint();
+		String s = new String(m_record, m_position, length, "UTF-8");
+		m_position += length;
+		return s;
+	}
+
+	private int nextVarint() throws IOException
+	{
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7)
+		{
+			if (m_position >= m_length)
+				throw new EOFException("Truncated record");
+			int b = m_record[m_position++];
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed record");
+	}
+
+	/**
+	 * @return The integer, or -1 at the end of the stream.
+	 */
+	private static int readVarint(InputStream in) throws IOException
+	{
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7)
+		{
+			int b = in.read();
+			if (b < 0)
+			{
+				if (shift == 0)
+					return -1;
+				throw new EOFException("Truncated record");
+			}
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed record");
+	}
+
+	/**
+	 * Convert a binary trace to XML or text.
+	 * Arguments: [binary trace] [output file] [xml|text] [first clock] [last clock].
+	 * @param args The arguments.
+	 * @throws IOException if the trace cannot be read.
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 2)
+		{
+			System.out.println("Usage: BinaryTraceReader trace.bin output [xml|text] [first clock] [last clock]");
+			return;
+		}
+		boolean text = args.length > 2 && args[2].equalsIgnoreCase("text");
+		ITracer<?> tracer = text ? new Tracer(args[1]) : new StreamingXMLTracer(args[1]);
+
+		BinaryTraceReader reader = new BinaryTraceReader(args[0]);
+		if (args.length > 3 && !reader.seek(Integer.parseInt(args[3])))
+			System.out.println("Clock " + args[3] + " is not in the trace.");
+		else
+		{
+			int nbEvents = reader.replay(tracer, args.length > 4 ? Integer.parseInt(args[4]) : -1);
+			System.out.println(nbEvents + " events converted.");
+		}
+		reader.close();
+		tracer.close();
+	}
+}
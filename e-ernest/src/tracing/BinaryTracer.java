@@ -0,0 +1,491 @@
+package tracing;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This tracer logs the trace into a compact binary file.
+ * Each event is a length-prefixed record of the calls made to the tracer during the event.
+ * Element names and text values (up to a total size) are replaced by their index in a dictionary.
+ * The file trace.bin comes with two sidecar files:
+ * trace.bin.dict holds the dictionary and trace.bin.idx holds the offset of the event of each clock value,
+ * so that BinaryTraceReader can reach any cycle with one seek.
+ * An event is written when the next event starts, when the event is finished, or when the tracer is closed.
+ * The files are flushed at a regular interval, the dictionary first, then the events, then the index,
+ * so that the files of a running or interrupted trace can be read up to the last flush.
+ * Once the tracer is closed, or if the files could not be created, the events are ignored.
+ * BinaryTraceReader converts the binary trace to the XML and text formats.
+ * @author Olivier
+ */
+public class BinaryTracer implements ITracer<Object>
+{
+	/** The magic number at the beginning of the trace and index files ("ETRC") */
+	public static final int MAGIC = 0x45545243;
+	public static final int VERSION = 1;
+
+	/** Record of an event started by startNewEvent() */
+	static final int RECORD_EVENT = 1;
+	/** Record of an event created by newEvent() */
+	static final int RECORD_NEW_EVENT = 2;
+
+	/** Text values longer than this are written inline instead of in the dictionary */
+	static final int MAX_DICTIONARY_VALUE = 1024;
+	/** Maximum total length of the strings of the dictionary (the next strings are written inline) */
+	static final int MAX_DICTIONARY_CHARS = 1 << 24;
+
+	/** Default interval between two flushes (in milliseconds). */
+	public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+	/** The events are also flushed when this many bytes are waiting */
+	static final int MAX_PENDING_BYTES = 1 << 16;
+
+	private DataOutputStream m_data;
+	private DataOutputStream m_dictionaryFile;
+	private OutputStream m_indexFile;
+	private long m_offset = 0;
+
+	/** The events and the index entries written since the last flush */
+	private Buffer m_records = new Buffer();
+	private ByteArrayOutputStream m_indexEntries = new ByteArrayOutputStream();
+	private DataOutputStream m_index = new DataOutputStream(m_indexEntries);
+
+	private long m_flushInterval = DEFAULT_FLUSH_INTERVAL;
+	private long m_lastFlush = 0;
+
+	private Map<String, Integer> m_dictionary = new HashMap<String, Integer>();
+	private int m_dictionaryChars = 0;
+
+	/** The clock value of the first indexed event, and of the next one */
+	private long m_firstClock = -1;
+	private long m_nextClock = 0;
+
+	private EventRecord m_currentEvent = null;
+	/** The events not yet written, in order of creation */
+	private List<EventRecord> m_pendingEvents = new ArrayList<EventRecord>();
+
+	private Buffer m_buffer = new Buffer();
+	private TraceFilter m_filter = TraceFilter.ALL;
+
+	/**
+	 * Create the trace file and its sidecar files.
+	 * @param fileName The name of the trace file.
+	 */
+	public BinaryTracer(String fileName)
+	{
+		this(fileName, DEFAULT_FLUSH_INTERVAL);
+	}
+
+	/**
+	 * Create the trace file and its sidecar files.
+	 * @param fileName The name of the trace file.
+	 * @param flushInterval The interval between two flushes in milliseconds (0 to flush after each event).
+	 */
+	public BinaryTracer(String fileName, long flushInterval)
+	{
+		m_flushInterval = flushInterval;
+		try
+		{
+			m_data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), MAX_PENDING_BYTES));
+			m_dictionaryFile = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName + ".dict")));
+			m_indexFile = new FileOutputStream(fileName + ".idx");
+			m_data.writeInt(MAGIC);
+			m_data.writeInt(VERSION);
+			m_data.flush();
+			m_offset = 8;
+			m_lastFlush = System.nanoTime();
+		}
+		catch (IOException e)
+		{
+			System.out.println("Error creating the file " + fileName);
+			e.printStackTrace();
+			m_data = null;
+		}
+	}
+
+	/**
+	 * Write the pending events and close the files.
+	 */
+	public boolean close()
+	{
+		if (m_data == null)
+			return false;
+		boolean status = true;
+		try
+		{
+			writePendingEvents();
+			flush();
+			m_data.close();
+			m_dictionaryFile.close();
+			m_indexFile.close();
+		}
+		catch (IOException e)
+		{
+			System.out.println("Error closing the binary trace");
+			e.printStackTrace();
+			status = false;
+		}
+		m_data = null;
+		return status;
+	}
+
+	public void startNewEvent(int t)
+	{
+		write();
+		if (m_data == null)
+		{
+			m_currentEvent = null;
+			return;
+		}
+		m_currentEvent = new EventRecord(RECORD_EVENT, t);
+		m_pendingEvents.add(m_currentEvent);
+	}
+
+	public void finishEvent()
+	{
+		write();
+		m_currentEvent = null;
+	}
+
+	public Object newEvent(String source, String type, int t)
+	{
+		if (m_data == null)
+			return null;
+		EventRecord event = new EventRecord(RECORD_NEW_EVENT, t);
+		event.source = source;
+		event.type = type;
+		m_pendingEvents.add(event);
+		return new Handle(event, 0);
+	}
+
+	public Object addEventElement(String name)
+	{
+		if (m_currentEvent == null || !m_filter.accepts(name))
+			return null;
+		return m_currentEvent.add(0, name, null);
+	}
+
+	public Object addEventElement(String name, boolean display)
+	{
+		return addEventElement(name);
+	}
+
+	public void addEventElement(String name, String textContent)
+	{
+		if (m_currentEvent != null && m_filter.accepts(name))
+			m_currentEvent.add(0, name, textContent == null ? "" : textContent);
+	}
+
+	public Object addSubelement(Object element, String name)
+	{
+		if (!(element instanceof Handle) || !m_filter.accepts(name))
+			return null;
+		Handle parent = (Handle)element;
+		return parent.event.add(parent.index, name, null);
+	}
+
+	public void addSubelement(Object element, String name, String textContent)
+	{
+		if (element instanceof Handle && m_filter.accepts(name))
+		{
+			Handle parent = (Handle)element;
+			parent.event.add(parent.index, name, textContent == null ? "" : textContent);
+		}
+	}
+
+	/**
+	 * @param filter The names of the elements kept in the trace.
+	 */
+	public void setFilter(TraceFilter filter)
+	{
+		m_filter = filter;
+	}
+
+	public boolean accepts(String name)
+	{
+		return m_filter.accepts(name);
+	}
+
+	public void addEventElement(String name, ITraceValue value)
+	{
+		if (m_currentEvent != null && m_filter.accepts(name))
+			this.addEventElement(name, value.getTraceValue());
+	}
+
+	public void addSubelement(Object element, String name, ITraceValue value)
+	{
+		if (element instanceof Handle && m_filter.accepts(name))
+			this.addSubelement(element, name, value.getTraceValue());
+	}
+
+	private void write()
+	{
+		if (m_data == null)
+			return;
+		try
+		{
+			writePendingEvents();
+			if (m_records.size() >= MAX_PENDING_BYTES || System.nanoTime() - m_lastFlush >= m_flushInterval * 1000000L)
+				flush();
+		}
+		catch (IOException e)
+		{
+			System.out.println("Error writing the binary trace");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Write the pending events to the buffers.
+	 * The events are forgotten even if writing fails, so that they are not written twice.
+	 */
+	private void writePendingEvents() throws IOException
+	{
+		try
+		{
+			for (EventRecord event : m_pendingEvents)
+				writeEvent(event);
+		}
+		finally
+		{
+			for (EventRecord event : m_pendingEvents)
+				event.written = true;
+			m_pendingEvents.clear();
+		}
+	}
+
+	/**
+	 * Write the dictionary, then the events, then the index entries to the files,
+	 * so that the events on the disk only refer to dictionary entries and the index entries only to events that are on the disk.
+	 */
+	private void flush() throws IOException
+	{
+		m_dictionaryFile.flush();
+		m_data.write(m_records.bytes(), 0, m_records.size());
+		m_data.flush();
+		m_records.reset();
+		m_indexEntries.writeTo(m_indexFile);
+		m_indexFile.flush();
+		m_indexEntries.reset();
+		m_lastFlush = System.nanoTime();
+	}
+
+	/**
+	 * Write an event as [length][kind][clock]([source][type])[calls...]
+	 * where each call is [parent index << 1 | has value][name]([value]).
+	 */
+	private void writeEvent(EventRecord event) throws IOException
+	{
+		if (event.kind == RECORD_EVENT)
+			index(event.clock);
+
+		m_buffer.reset();
+		m_buffer.writeVarint(event.kind);
+		m_buffer.writeVarint((event.clock << 1) ^ (event.clock >> 31));
+		if (event.kind == RECORD_NEW_EVENT)
+		{
+			writeString(event.source, true);
+			writeString(event.type, true);
+		}
+		for (int i = 0; i < event.nbCalls; i++)
+		{
+			String value = event.values[i];
+			m_buffer.writeVarint((event.parents[i] << 1) | (value != null ? 1 : 0));
+			writeString(event.names[i], true);
+			if (value != null)
+				writeString(value, value.length() <= MAX_DICTIONARY_VALUE);
+		}
+
+		int length = m_buffer.size();
+		int start = m_records.size();
+		m_records.writeVarint(length);
+		m_records.write(m_buffer.bytes(), 0, length);
+		m_offset += m_records.size() - start;
+	}
+
+	/**
+	 * Point the index entries of the clock values up to this one to the event about to be written.
+	 */
+	private void index(int clock) throws IOException
+	{
+		if (m_firstClock < 0)
+		{
+			m_firstClock = clock;
+			m_nextClock = clock;
+			m_index.writeInt(MAGIC);
+			m_index.writeLong(clock);
+		}
+		// The clock values that were skipped point to this event.
+		while (m_nextClock <= clock)
+		{
+			m_index.writeLong(m_offset);
+			m_nextClock++;
+		}
+	}
+
+	/**
+	 * Write a string as [dictionary index + 1], or as [0][length][UTF-8 bytes] if not in the dictionary.
+	 */
+	private void writeString(String s, boolean dictionary) throws IOException
+	{
+		if (dictionary)
+		{
+			Integer id = m_dictionary.get(s);
+			if (id == null && m_dictionaryChars + s.length() <= MAX_DICTIONARY_CHARS)
+			{
+				id = m_dictionary.size();
+				m_dictionary.put(s, id);
+				m_dictionaryChars += s.length();
+				byte[] bytes = s.getBytes("UTF-8");
+				Buffer.writeVarint(m_dictionaryFile, bytes.length);
+				m_dictionaryFile.write(bytes);
+			}
+			if (id != null)
+			{
+				m_buffer.writeVarint(id + 1);
+				return;
+			}
+		}
+		byte[] bytes = s.getBytes("UTF-8");
+		m_buffer.writeVarint(0);
+		m_buffer.writeVarint(bytes.length);
+		m_buffer.write(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * The calls made during an event not yet written.
+	 */
+	private static class EventRecord
+	{
+		final int kind;
+		final int clock;
+		String source;
+		String type;
+		boolean written = false;
+
+		int nbCalls = 0;
+		/** The index of the parent of each element (0 for the event, i + 1 for the element of the i-th call) */
+		int[] parents = new int[16];
+		String[] names = new String[16];
+		/** The text content of each element (null for the elements created without text) */
+		String[] values = new String[16];
+
+		EventRecord(int kind, int clock)
+		{
+			this.kind = kind;
+			this.clock = clock;
+		}
+
+		Handle add(int parent, String name, String value)
+		{
+			if (written)
+				return null;
+			if (nbCalls == parents.length)
+			{
+				int[] newParents = new int[nbCalls * 2];
+				String[] newNames = new String[nbCalls * 2];
+				String[] newValues = new String[nbCalls * 2];
+				System.arraycopy(parents, 0, newParents, 0, nbCalls);
+				System.arraycopy(names, 0, newNames, 0, nbCalls);
+				System.arraycopy(values, 0, newValues, 0, nbCalls);
+				parents = newParents;
+				names = newNames;
+				values = newValues;
+			}
+			parents[nbCalls] = parent;
+			names[nbCalls] = name;
+			values[nbCalls] = value;
+			nbCalls++;
+			return new Handle(this, nbCalls);
+		}
+	}
+
+	/**
+	 * Stands for an element of an event not yet written.
+	 */
+	private static class Handle
+	{
+		final EventRecord event;
+		final int index;
+
+		Handle(EventRecord event, int index)
+		{
+			this.event = event;
+			this.index = index;
+		}
+	}
+
+	/**
+	 * A growable byte buffer with variable-length integer encoding.
+	 */
+	static class Buffer
+	{
+		private byte[] bytes = new byte[256];
+		private int size = 0;
+
+		void reset()
+		{
+			size = 0;
+		}
+
+		int size()
+		{
+			return size;
+		}
+
+		byte[] bytes()
+		{
+			return bytes;
+		}
+
+		void write(byte[] b, int offset, int length)
+		{
+			ensure(length);
+			System.arraycopy(b, offset, bytes, size, length);
+			size += length;
+		}
+
+		void writeVarint(int value)
+		{
+			ensure(5);
+			while ((value & ~0x7F) != 0)
+			{
+				bytes[size++] = (byte)((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			bytes[size++] = (byte)value;
+		}
+
+		private void ensure(int length)
+		{
+			if (size + length > bytes.length)
+			{
+				byte[] newBytes = new byte[Math.max(bytes.length * 2, size + length)];
+				System.arraycopy(bytes, 0, newBytes, 0, size);
+				bytes = newBytes;
+			}
+		}
+
+		/**
+		 * @return The number of bytes written.
+		 */
+		static int writeVarint(OutputStream out, int value) throws IOException
+		{
+			int n = 1;
+			while ((value & ~0x7F) != 0)
+			{
+				out.write((value & 0x7F) | 0x80);
+				value >>>= 7;
+				n++;
+			}
+			out.write(value);
+			return n;
+		}
+	}
+}
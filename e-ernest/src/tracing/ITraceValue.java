@@ -0,0 +1,13 @@
+package tracing;
+
+/**
+ * The value of a trace element, computed only if the tracer keeps the element.
+ * @author Olivier
+ */
+public interface ITraceValue
+{
+	/**
+	 * @return The text content of the element.
+	 */
+	public String getTraceValue();
+}
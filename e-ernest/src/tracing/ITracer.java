@@ -71,4 +71,24 @@ public interface ITracer<EventElement> {
 	 */
 	public EventElement newEvent(String source, String type, int t);
 
+	/**
+	 * Call sites can check this before building an element, so that a dropped element costs nothing.
+	 * @param name The name of an element (of the event or a sub element).
+	 * @return true if the tracer keeps the elements of this name.
+	 */
+	public boolean accepts(String name);
+
+	/**
+	 * @param name The element's name
+	 * @param value The element's value, computed only if the tracer keeps the element.
+	 */
+	public void addEventElement(String name, ITraceValue value);
+
+	/**
+	 * @param element The element
+	 * @param name The name of the sub element
+	 * @param value The text content of the sub element, computed only if the tracer keeps the sub element.
+	 */
+	public void addSubelement(EventElement element, String name, ITraceValue value);
+
 }
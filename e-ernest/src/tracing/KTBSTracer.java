@@ -43,10 +43,12 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 
+import utils.Log;
 import utils.Strings;
 
 /**
- * This tracer logs the trace into an XML file.
+ * This tracer logs the trace into a KTBS.
+ * In streaming mode (see setStreaming()), the triples are uploaded by batches of events and the in-memory graph is not used.
  */
 public class KTBSTracer implements ITracer<Element> //TODO
 {
@@ -69,6 +71,7 @@ public class KTBSTracer implements ITracer<Element> //TODO
 	private URIReference m_hasXMLValue;
 	private URIReference m_hasEndNode;
 	private int m_id = 0;
+	private TraceFilter m_filter = TraceFilter.ALL;
 	
 	private boolean m_eventStarted;
 
@@ -84,6 +87,12 @@ public class KTBSTracer implements ITracer<Element> //TODO
 
 	private Transformer m_transformer;
 
+	/** The triples of the events not yet uploaded, in streaming mode */
+	private StringBuilder m_pendingTriples = null;
+	private int m_pendingEvents = 0;
+	private int m_batchEvents = 1;
+	private String m_currentEventLabel;
+
 	static final String ktbsns = "http://liris.cnrs.fr/silex/2009/ktbs#";
 	static final String rdfns = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
 	
@@ -138,6 +147,20 @@ public class KTBSTracer implements ITracer<Element> //TODO
 		m_transformer.setOutputProperty(OutputKeys.ENCODING, "ISO-8859-1");
 	}
 	
+	/**
+	 * Switch to the streaming mode.
+	 * The triples of each event are written directly in N-Triples, without the in-memory graph,
+	 * and uploaded together every batchEvents events and when the tracer is closed.
+	 * The memory used by the tracer is thus bounded by the size of a batch, however long the run.
+	 * @param batchEvents The number of events uploaded in one request.
+	 */
+	public void setStreaming(int batchEvents)
+	{
+		m_batchEvents = Math.max(1, batchEvents);
+		if (m_pendingTriples == null)
+			m_pendingTriples = new StringBuilder();
+	}
+
 	protected void createNewTrace(String baseURL, String newName, String traceModel)
 	{
 		try {
@@ -289,13 +312,30 @@ public class KTBSTracer implements ITracer<Element> //TODO
 	}
 	
 	/**
-	 * Write the XML document to the file trace.xml
-	 * from http://java.developpez.com/faq/xml/?page=xslt#creerXmlDom
+	 * Upload the triples not yet uploaded (streaming mode).
 	 */
 	public boolean close() 
 	{
 		//TODO: end of trace
-		return false;
+		if (m_pendingTriples == null)
+			return false;
+		if (m_eventStarted)
+			this.finishEvent();
+		this.flush();
+		return true;
+	}
+
+	/**
+	 * Upload the pending triples in one request (streaming mode).
+	 */
+	public void flush()
+	{
+		if (m_pendingTriples == null || m_pendingEvents == 0)
+			return;
+		m_pendingTriples.append("\n\n");
+		this.post_data(m_traceURL, m_pendingTriples.toString());
+		m_pendingTriples.setLength(0);
+		m_pendingEvents = 0;
 	}
 
 	/**
@@ -316,7 +356,7 @@ public class KTBSTracer implements ITracer<Element> //TODO
 		
 		++m_id;
 		
-		System.err.println("NEW EVENT");
+		Log.trace("NEW EVENT");
 		m_xmlEventElement = m_doc.createElement("event");
 		m_xmlEventElement.setAttribute("id", Integer.toString(m_id));
 		m_xmlEventElement.setAttribute("source", source);
@@ -326,6 +366,17 @@ public class KTBSTracer implements ITracer<Element> //TODO
 		m_xmlEventElement.appendChild(typeElement);
 		m_doc.appendChild(m_xmlEventElement);
 		
+		if (m_pendingTriples != null)
+		{
+			m_currentEventLabel = "_:e" + m_id;
+			String date = "\"" + t + "\"^^<http://www.w3.org/2001/XMLSchema#integer>";
+			addTriple(m_currentEventLabel, rdfns + "type", literal(type));
+			addTriple(m_currentEventLabel, ktbsns + "hasTrace", "<" + m_traceURL + ">");
+			addTriple(m_currentEventLabel, ktbsns + "hasBegin", date);
+			addTriple(m_currentEventLabel, ktbsns + "hasEnd", date);
+			return m_xmlEventElement;
+		}
+
 		m_currentEvent = m_elef.createBlankNode();
 		ObjectNode dateNode = m_elef.createLiteral(Integer.toString(t), URI.create("http://www.w3.org/2001/XMLSchema#integer"));
 		ObjectNode typeNode = m_elef.createLiteral(type);
@@ -372,6 +423,15 @@ public class KTBSTracer implements ITracer<Element> //TODO
 		} catch (TransformerException e) {
 			e.printStackTrace();
 		}
+		if (m_pendingTriples != null)
+		{
+			addTriple(m_currentEventLabel, m_traceModelURL + "hasXMLValue", literal(sw.toString()));
+			m_pendingEvents++;
+			if (m_pendingEvents >= m_batchEvents)
+				this.flush();
+			return;
+		}
+
 		ObjectNode xmlVal = m_elef.createLiteral(sw.toString());
 		m_graph.add(m_currentEvent, m_hasXMLValue, xmlVal);
 		
@@ -391,6 +451,46 @@ public class KTBSTracer implements ITracer<Element> //TODO
 		//System.exit(0);
 	}
 
+	private void addTriple(String subject, String predicateURI, String object)
+	{
+		m_pendingTriples.append(subject).append(" <").append(predicateURI).append("> ").append(object).append(" .\n");
+	}
+
+	/**
+	 * The characters outside the basic multilingual plane are escaped as \UXXXXXXXX,
+	 * and the unpaired surrogates are replaced by U+FFFD.
+	 * @param value A string.
+	 * @return The N-Triples plain literal of the string.
+	 */
+	private static String literal(String value)
+	{
+		StringBuilder literal = new StringBuilder(value.length() + 16).append('"');
+		int i = 0;
+		while (i < value.length())
+		{
+			int c = value.codePointAt(i);
+			i += Character.charCount(c);
+			switch (c)
+			{
+				case '\\': literal.append("\\\\"); break;
+				case '"': literal.append("\\\""); break;
+				case '\n': literal.append("\\n"); break;
+				case '\r': literal.append("\\r"); break;
+				case '\t': literal.append("\\t"); break;
+				default:
+					if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)
+						literal.append("\\uFFFD");
+					else if (c > 0xFFFF)
+						literal.append(String.format("\\U%08X", c));
+					else if (c < 0x20 || c > 0x7e)
+						literal.append(String.format("\\u%04X", c));
+					else
+						literal.append((char)c);
+			}
+		}
+		return literal.append('"').toString();
+	}
+
 	/**
 	 * Add a new element to the current event
 	 * @param name The element's name
@@ -420,7 +520,7 @@ public class KTBSTracer implements ITracer<Element> //TODO
 	
 	public Element addSubelement(Element element, String name)
 	{
-		if (element != null)
+		if (element != null && m_filter.accepts(name))
 		{
 			Element child = m_doc.createElement(name);
 			element.appendChild(child);
@@ -432,7 +532,7 @@ public class KTBSTracer implements ITracer<Element> //TODO
 	
 	public void addSubelement(Element element, String name, String textContent)
 	{
-		if (element != null)
+		if (element != null && m_filter.accepts(name))
 		{
 			Element child = m_doc.createElement(name);
 			child.setTextContent(textContent);
@@ -444,4 +544,29 @@ public class KTBSTracer implements ITracer<Element> //TODO
 	{
 		return this.addEventElement(name);
 	}
+
+	/**
+	 * @param filter The names of the elements kept in the trace.
+	 */
+	public void setFilter(TraceFilter filter)
+	{
+		m_filter = filter;
+	}
+
+	public boolean accepts(String name)
+	{
+		return m_filter.accepts(name);
+	}
+
+	public void addEventElement(String name, ITraceValue value)
+	{
+		if (m_filter.accepts(name))
+			this.addEventElement(name, value.getTraceValue());
+	}
+
+	public void addSubelement(Element element, String name, ITraceValue value)
+	{
+		if (element != null && m_filter.accepts(name))
+			this.addSubelement(element, name, value.getTraceValue());
+	}
 }
@@ -55,6 +55,7 @@ public class KTBSTracerFfffffffffff implements ITracer<BlankNode> //TODO
 	private URIReference m_idNode;
 	private URIReference m_sourceNode;
 	private int m_id = 0;
+	private TraceFilter m_filter = TraceFilter.ALL;
 	
 	private boolean m_eventStarted;
 
@@ -346,6 +347,8 @@ public class KTBSTracerFfffffffffff implements ITracer<BlankNode> //TODO
 	 */
 	public void addEventElement(String name, String textContent)
 	{
+		if (!m_filter.accepts(name))
+			return;
 		PredicateNode elemNode = m_elef.createURIReference(URI.create(m_traceModelURL + name));
 		ObjectNode contentNode = m_elef.createLiteral(textContent);
 		m_graph.add(m_currentEvent, elemNode, contentNode);
@@ -358,6 +361,8 @@ public class KTBSTracerFfffffffffff implements ITracer<BlankNode> //TODO
 	 */
 	public BlankNode addEventElement(String name)
 	{
+		if (!m_filter.accepts(name))
+			return null;
 		PredicateNode relNode = m_elef.createURIReference(URI.create(m_traceModelURL + name));
 		BlankNode elemNode = m_elef.createBlankNode();
 		m_graph.add(m_currentEvent, relNode, elemNode);
@@ -367,6 +372,8 @@ public class KTBSTracerFfffffffffff implements ITracer<BlankNode> //TODO
 	
 	public BlankNode addSubelement(BlankNode element, String name)
 	{
+		if (element == null || !m_filter.accepts(name))
+			return null;
 		PredicateNode relNode = m_elef.createURIReference(URI.create(m_traceModelURL + name));
 		BlankNode elemNode = m_elef.createBlankNode();
 		m_graph.add(element, relNode, elemNode);
@@ -376,6 +383,8 @@ public class KTBSTracerFfffffffffff implements ITracer<BlankNode> //TODO
 	
 	public void addSubelement(BlankNode element, String name, String textContent)
 	{
+		if (element == null || !m_filter.accepts(name))
+			return;
 		PredicateNode relNode = m_elef.createURIReference(URI.create(m_traceModelURL + name));
 		ObjectNode contentNode = m_elef.createLiteral(textContent);
 		m_graph.add(element, relNode, contentNode);
@@ -385,4 +394,29 @@ public class KTBSTracerFfffffffffff implements ITracer<BlankNode> //TODO
 	{
 		return this.addEventElement(name);
 	}
+
+	/**
+	 * @param filter The names of the elements kept in the trace.
+	 */
+	public void setFilter(TraceFilter filter)
+	{
+		m_filter = filter;
+	}
+
+	public boolean accepts(String name)
+	{
+		return m_filter.accepts(name);
+	}
+
+	public void addEventElement(String name, ITraceValue value)
+	{
+		if (m_filter.accepts(name))
+			this.addEventElement(name, value.getTraceValue());
+	}
+
+	public void addSubelement(BlankNode element, String name, ITraceValue value)
+	{
+		if (element != null && m_filter.accepts(name))
+			this.addSubelement(element, name, value.getTraceValue());
+	}
 }
@@ -33,6 +33,7 @@ public class NamedPipeTracer implements ITracer<Element>
 	private Element m_currentEvent;
 	private String m_fileName;
 	private int m_id = 0;
+	private TraceFilter m_filter = TraceFilter.ALL;
 
 	private boolean m_eventStarted;
 
@@ -195,7 +196,7 @@ public class NamedPipeTracer implements ITracer<Element>
 	
 	private Element addEventElementImpl(String name, String textContent)
 	{
-		if (m_currentEvent != null)
+		if (m_currentEvent != null && m_filter.accepts(name))
 		{
 			Element element = m_document.createElement(name);
 			element.setTextContent(textContent);
@@ -218,7 +219,7 @@ public class NamedPipeTracer implements ITracer<Element>
 	
 	private Element addSubelementImpl(Element element, String name, String textContent)
 	{
-		if (element != null)
+		if (element != null && m_filter.accepts(name))
 		{
 			Element subElement = m_document.createElement(name);
 			subElement.setTextContent(textContent);
@@ -232,4 +233,29 @@ public class NamedPipeTracer implements ITracer<Element>
 	{
 		return this.addEventElement(name);
 	}
+
+	/**
+	 * @param filter The names of the elements kept in the trace.
+	 */
+	public void setFilter(TraceFilter filter)
+	{
+		m_filter = filter;
+	}
+
+	public boolean accepts(String name)
+	{
+		return m_filter.accepts(name);
+	}
+
+	public void addEventElement(String name, ITraceValue value)
+	{
+		if (m_filter.accepts(name))
+			this.addEventElement(name, value.getTraceValue());
+	}
+
+	public void addSubelement(Element element, String name, ITraceValue value)
+	{
+		if (element != null && m_filter.accepts(name))
+			this.addSubelement(element, name, value.getTraceValue());
+	}
 }
@@ -0,0 +1,313 @@
+package tracing;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * This tracer logs the trace into an XML file, event by event.
+ * It produces the same <sequence><event> structure as XMLTracer, but each event is written to the file
+ * when the next event starts, when the event is finished, or when the tracer is closed.
+ * Only the events not yet written are kept in memory, and the file is complete up to the last written event if the program stops.
+ * Elements added to an event after it has been written are ignored.
+ * Once the tracer is closed, or if the file could not be created, the events are ignored.
+ * @author Olivier
+ */
+public class StreamingXMLTracer implements ITracer<StreamingXMLTracer.Node>
+{
+	private static final String DATE_FORMAT_NOW = "yyyy-MM-dd HH:mm:ss";
+	private static final String ENCODING = "ISO-8859-1";
+
+	private OutputStream m_stream;
+	private XMLStreamWriter m_writer;
+	private Node m_currentEvent;
+	/** The events not yet written, in order of creation */
+	private List<Node> m_pendingEvents = new ArrayList<Node>();
+	private int m_id = 0;
+	private TraceFilter m_filter = TraceFilter.ALL;
+
+	/**
+	 * Initialize the tracer and write the beginning of the sequence.
+	 * @param fileName The name of the trace file
+	 */
+	public StreamingXMLTracer(String fileName)
+	{
+		try
+		{
+			m_stream = new BufferedOutputStream(new FileOutputStream(fileName));
+			m_writer = XMLOutputFactory.newInstance().createXMLStreamWriter(m_stream, ENCODING);
+
+			String date = new SimpleDateFormat(DATE_FORMAT_NOW).format(Calendar.getInstance().getTime());
+			m_writer.writeStartDocument(ENCODING, "1.0");
+			m_writer.writeCharacters("\n");
+			m_writer.writeStartElement("sequence");
+			m_writer.writeAttribute("version", "Ernest 10.0");
+			m_writer.writeAttribute("date", date);
+			m_writer.flush();
+		}
+		catch (Exception e)
+		{
+			System.out.println("Error creating the file " + fileName);
+			e.printStackTrace();
+			m_writer = null;
+		}
+	}
+
+	/**
+	 * Write the pending events and the end of the sequence, and close the file.
+	 */
+	public boolean close()
+	{
+		if (m_writer == null)
+			return false;
+		boolean status = true;
+		try
+		{
+			writePendingEvents();
+			m_writer.writeCharacters("\n");
+			m_writer.writeEndElement();
+			m_writer.writeEndDocument();
+			m_writer.close();
+			m_stream.close();
+		}
+		catch (Exception e)
+		{
+			System.out.println("Error closing the XML trace");
+			status = false;
+			e.printStackTrace();
+		}
+		m_writer = null;
+		return status;
+	}
+
+	/**
+	 * Create an event that can be populated using its reference.
+	 * @param source The source of the event.
+	 * @param type The event's type.
+	 * @param t The event's time stamp.
+	 * @return The pointer to the event.
+	 */
+	public Node newEvent(String source, String type, int t)
+	{
+		if (m_writer == null)
+			return null;
+		Node event = new Node("event", "");
+		event.setEventAttributes(m_id, source, t);
+		m_id++;
+		event.addChild("type", type);
+		m_pendingEvents.add(event);
+		return event;
+	}
+
+	/**
+	 * Write the previous events and create a new event that can be populated with elements later.
+	 * @param t the time stamp
+	 */
+	public void startNewEvent(int t)
+	{
+		write();
+		if (m_writer == null)
+		{
+			m_currentEvent = null;
+			return;
+		}
+
+		m_id++;
+		m_currentEvent = new Node("event", "");
+		m_currentEvent.setEventAttributes(m_id, "Ernest", t);
+		m_pendingEvents.add(m_currentEvent);
+	}
+
+	/**
+	 * Write the current event.
+	 */
+	public void finishEvent()
+	{
+		write();
+		m_currentEvent = null;
+	}
+
+	public Node addEventElement(String name)
+	{
+		return this.addEventElementImpl(name, "");
+	}
+
+	public void addEventElement(String name, String textContent)
+	{
+		this.addEventElementImpl(name, textContent);
+	}
+
+	public Node addEventElement(String name, boolean display)
+	{
+		return this.addEventElementImpl(name, "");
+	}
+
+	private Node addEventElementImpl(String name, String textContent)
+	{
+		if (m_currentEvent != null && m_filter.accepts(name))
+			return m_currentEvent.addChild(name, textContent);
+		else
+			return null;
+	}
+
+	public Node addSubelement(Node element, String name)
+	{
+		return this.addSubelementImpl(element, name, "");
+	}
+
+	public void addSubelement(Node element, String name, String textContent)
+	{
+		this.addSubelementImpl(element, name, textContent);
+	}
+
+	private Node addSubelementImpl(Node element, String name, String textContent)
+	{
+		if (element != null && m_filter.accepts(name))
+			return element.addChild(name, textContent);
+		else
+			return null;
+	}
+
+	/**
+	 * @param filter The names of the elements kept in the trace.
+	 */
+	public void setFilter(TraceFilter filter)
+	{
+		m_filter = filter;
+	}
+
+	public boolean accepts(String name)
+	{
+		return m_filter.accepts(name);
+	}
+
+	public void addEventElement(String name, ITraceValue value)
+	{
+		if (m_filter.accepts(name))
+			this.addEventElement(name, value.getTraceValue());
+	}
+
+	public void addSubelement(Node element, String name, ITraceValue value)
+	{
+		if (element != null && m_filter.accepts(name))
+			this.addSubelement(element, name, value.getTraceValue());
+	}
+
+	private void write()
+	{
+		if (m_writer == null)
+			return;
+		try
+		{
+			writePendingEvents();
+			m_writer.flush();
+			m_stream.flush();
+		}
+		catch (Exception e)
+		{
+			System.out.println("Error writing the XML trace");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Write the pending events.
+	 * The events are forgotten even if writing fails, so that they are not written twice.
+	 */
+	private void writePendingEvents() throws XMLStreamException
+	{
+		try
+		{
+			for (Node event : m_pendingEvents)
+				writeNode(event, 1);
+		}
+		finally
+		{
+			for (Node event : m_pendingEvents)
+				event.written = true;
+			m_pendingEvents.clear();
+		}
+	}
+
+	private void writeNode(Node node, int depth) throws XMLStreamException
+	{
+		indent(depth);
+		boolean empty = node.children == null && node.text.length() == 0;
+		if (empty)
+			m_writer.writeEmptyElement(node.name);
+		else
+			m_writer.writeStartElement(node.name);
+		if (node.source != null)
+		{
+			m_writer.writeAttribute("date", node.date + "");
+			m_writer.writeAttribute("id", node.id + "");
+			m_writer.writeAttribute("source", node.source);
+		}
+		if (!empty)
+		{
+			m_writer.writeCharacters(node.text);
+			if (node.children != null)
+			{
+				for (Node child : node.children)
+					writeNode(child, depth + 1);
+				indent(depth);
+			}
+			m_writer.writeEndElement();
+		}
+	}
+
+	private void indent(int depth) throws XMLStreamException
+	{
+		StringBuilder s = new StringBuilder(depth + 1).append('\n');
+		for (int i = 0; i < depth; i++)
+			s.append('\t');
+		m_writer.writeCharacters(s.toString());
+	}
+
+	/**
+	 * An element of an event not yet written.
+	 */
+	public static class Node
+	{
+		private String name;
+		private String text;
+		private List<Node> children = null;
+		private boolean written = false;
+
+		/** The attributes of event elements */
+		private String source = null;
+		private int id;
+		private int date;
+
+		private Node(String name, String text)
+		{
+			this.name = name;
+			this.text = text == null ? "" : text;
+		}
+
+		private void setEventAttributes(int id, String source, int date)
+		{
+			this.id = id;
+			this.source = source;
+			this.date = date;
+		}
+
+		private Node addChild(String childName, String childText)
+		{
+			if (written)
+				return null;
+			Node child = new Node(childName, childText);
+			if (children == null)
+				children = new ArrayList<Node>(4);
+			children.add(child);
+			return child;
+		}
+	}
+}
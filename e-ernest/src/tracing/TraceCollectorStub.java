@@ -0,0 +1,283 @@
+package tracing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.w3c.dom.Element;
+
+/**
+ * An in-process stand-in for the trace collector scripts used by XMLStreamTracer
+ * (newStreamedTrace.php, streamTrace.php and endOfStream.php),
+ * and for a KTBS base used by KTBSTracer (at getKtbsUrl()).
+ * It counts what it receives and can answer slowly or fail, so that the posting path can be tested offline.
+ * @author Olivier
+ */
+public class TraceCollectorStub implements HttpHandler
+{
+	/** The maximum time taken by close() in the load test, in milliseconds */
+	private static final long CLOSE_TIMEOUT = 60000;
+
+	private HttpServer server;
+	private long delayMillis = 0;
+	private float failureRate = 0;
+	private Random random = new Random(0);
+
+	private AtomicLong nbPosts = new AtomicLong();
+	private AtomicLong nbFailures = new AtomicLong();
+	private AtomicLong nbSlices = new AtomicLong();
+	private AtomicLong nbBytes = new AtomicLong();
+	private AtomicLong nbTraces = new AtomicLong();
+	private AtomicLong nbEnds = new AtomicLong();
+	private AtomicLong nbTriples = new AtomicLong();
+
+	/**
+	 * Start the stand-in.
+	 * @param port The port (0 for any free port).
+	 * @throws IOException if the port is not available.
+	 */
+	public TraceCollectorStub(int port) throws IOException
+	{
+		server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+		server.createContext("/", this);
+		server.start();
+	}
+
+	/**
+	 * @return The URL to give to XMLStreamTracer.
+	 */
+	public String getUrl()
+	{
+		return "http://localhost:" + server.getAddress().getPort() + "/";
+	}
+
+	/**
+	 * @return The base URL to give to KTBSTracer.
+	 */
+	public String getKtbsUrl()
+	{
+		return getUrl() + "ktbs/";
+	}
+
+	/**
+	 * @param delayMillis The time taken to answer each post of slices.
+	 * @param failureRate The proportion of posts of slices answered with a server error.
+	 */
+	public void setBehavior(long delayMillis, float failureRate)
+	{
+		this.delayMillis = delayMillis;
+		this.failureRate = failureRate;
+	}
+
+	public void stop()
+	{
+		server.stop(0);
+	}
+
+	public long getNbPosts()
+	{
+		return nbPosts.get();
+	}
+
+	public long getNbFailures()
+	{
+		return nbFailures.get();
+	}
+
+	public long getNbSlices()
+	{
+		return nbSlices.get();
+	}
+
+	/**
+	 * @return The number of bytes received in the bodies of the posts of slices (compressed or not).
+	 */
+	public long getNbBytes()
+	{
+		return nbBytes.get();
+	}
+
+	public long getNbTraces()
+	{
+		return nbTraces.get();
+	}
+
+	public long getNbEnds()
+	{
+		return nbEnds.get();
+	}
+
+	/**
+	 * @return The number of triples posted to the KTBS base and its traces.
+	 */
+	public long getNbTriples()
+	{
+		return nbTriples.get();
+	}
+
+	public void handle(HttpExchange exchange) throws IOException
+	{
+		byte[] body = read(exchange.getRequestBody());
+		String path = exchange.getRequestURI().getPath();
+		int status = 200;
+		String answer = "";
+
+		if (path.startsWith("/ktbs/"))
+		{
+			// An empty base, so that KTBSTracer names its trace Ernest1.
+			if ("POST".equals(exchange.getRequestMethod()))
+			{
+				for (String line : new String(body, "ISO-8859-1").split("\n"))
+					if (line.endsWith(" ."))
+						nbTriples.incrementAndGet();
+				nbPosts.incrementAndGet();
+				nbBytes.addAndGet(body.length);
+				status = 201;
+			}
+		}
+		else if (path.endsWith("newStreamedTrace.php"))
+		{
+			answer = "trace" + nbTraces.incrementAndGet();
+		}
+		else if (path.endsWith("streamTrace.php"))
+		{
+			if (delayMillis > 0)
+			{
+				try
+				{
+					Thread.sleep(delayMillis);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+			boolean fail;
+			synchronized (random)
+			{
+				fail = random.nextFloat() < failureRate;
+			}
+			if (fail)
+			{
+				nbFailures.incrementAndGet();
+				status = 503;
+				answer = "Unavailable";
+			}
+			else
+			{
+				nbBytes.addAndGet(body.length);
+				if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding")))
+					body = read(new GZIPInputStream(new ByteArrayInputStream(body)));
+				nbSlices.addAndGet(countSlices(new String(body, "ISO-8859-1")));
+				nbPosts.incrementAndGet();
+			}
+		}
+		else if (path.endsWith("endOfStream.php"))
+		{
+			nbEnds.incrementAndGet();
+		}
+		else
+		{
+			status = 404;
+			answer = "Not found";
+		}
+
+		byte[] bytes = answer.getBytes("ISO-8859-1");
+		exchange.sendResponseHeaders(status, bytes.length > 0 ? bytes.length : -1);
+		OutputStream os = exchange.getResponseBody();
+		os.write(bytes);
+		os.close();
+	}
+
+	private int countSlices(String form) throws IOException
+	{
+		int count = 0;
+		for (String parameter : form.split("&"))
+		{
+			if (parameter.startsWith("data="))
+			{
+				String data = URLDecoder.decode(parameter.substring(5), "UTF-8");
+				for (int i = data.indexOf("<slice"); i >= 0; i = data.indexOf("<slice", i + 1))
+					count++;
+			}
+		}
+		return count;
+	}
+
+	private static byte[] read(InputStream is) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		for (int len = is.read(buffer); len != -1; len = is.read(buffer))
+			bytes.write(buffer, 0, len);
+		is.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Load test: trace synthetic events through XMLStreamTracer to the stand-in.
+	 * Arguments: [number of events] [events per batch] [gzip true/false] [delay ms] [failure rate].
+	 * The test fails if closing the tracer takes longer than CLOSE_TIMEOUT.
+	 * @param args The arguments.
+	 * @throws IOException if the stand-in cannot start.
+	 * @throws InterruptedException if the test is interrupted while closing the tracer.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		int nbEvents = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int batch = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+		boolean gzip = args.length > 2 ? Boolean.parseBoolean(args[2]) : false;
+		long delay = args.length > 3 ? Long.parseLong(args[3]) : 0;
+		float failureRate = args.length > 4 ? Float.parseFloat(args[4]) : 0;
+
+		TraceCollectorStub stub = new TraceCollectorStub(0);
+		stub.setBehavior(delay, failureRate);
+		final XMLStreamTracer tracer = new XMLStreamTracer(stub.getUrl(), "cookie");
+		tracer.setBatching(batch, 1000);
+		tracer.setCompression(gzip);
+
+		long start = System.nanoTime();
+		for (int t = 0; t < nbEvents; t++)
+		{
+			tracer.startNewEvent(t);
+			tracer.addEventElement("primitive", "-t");
+			tracer.addEventElement("satisfaction", "-5");
+			Element place = tracer.addEventElement("enacted_places");
+			tracer.addSubelement(place, "place", "1,0");
+		}
+		long traced = System.nanoTime() - start;
+		Thread closing = new Thread(new Runnable(){
+			public void run() {
+				tracer.close();
+			}
+		}, "close");
+		closing.setDaemon(true);
+		closing.start();
+		closing.join(CLOSE_TIMEOUT);
+		long total = System.nanoTime() - start;
+		if (closing.isAlive())
+		{
+			System.out.println("close() did not return within " + CLOSE_TIMEOUT + " ms");
+			stub.stop();
+			System.exit(1);
+		}
+
+		System.out.println("events " + nbEvents + ", batch " + batch + ", gzip " + gzip);
+		System.out.println("traced in " + traced / 1000000 + " ms (" + Math.round(nbEvents * 1e9 / traced) + " events/s)");
+		System.out.println("posted in " + total / 1000000 + " ms (" + Math.round(nbEvents * 1e9 / total) + " events/s)");
+		System.out.println("posts " + stub.getNbPosts() + ", failures " + stub.getNbFailures()
+				+ ", spilled " + tracer.getNbSpilled() + ", slices " + stub.getNbSlices() + ", bytes " + stub.getNbBytes());
+		stub.stop();
+	}
+}
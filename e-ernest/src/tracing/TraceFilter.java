@@ -0,0 +1,54 @@
+package tracing;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Selects the trace elements that a tracer keeps, by name.
+ * A filter is immutable.
+ * @author Olivier
+ */
+public final class TraceFilter
+{
+	/** Keeps all the elements */
+	public static final TraceFilter ALL = new TraceFilter(null, false);
+
+	private final Set<String> names;
+	private final boolean only;
+
+	/**
+	 * @param names The names of the elements to keep.
+	 * @return The filter that keeps only these elements.
+	 */
+	public static TraceFilter only(String... names)
+	{
+		return new TraceFilter(names, true);
+	}
+
+	/**
+	 * @param names The names of the elements to drop.
+	 * @return The filter that keeps all the elements but these ones.
+	 */
+	public static TraceFilter except(String... names)
+	{
+		return new TraceFilter(names, false);
+	}
+
+	private TraceFilter(String[] names, boolean only)
+	{
+		this.names = names == null ? null : new HashSet<String>(Arrays.asList(names));
+		this.only = only;
+	}
+
+	/**
+	 * @param name The name of an element.
+	 * @return true if the element is kept.
+	 */
+	public boolean accepts(String name)
+	{
+		if (names == null)
+			return true;
+		return names.contains(name) == only;
+	}
+}
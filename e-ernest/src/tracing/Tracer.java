@@ -1,66 +1,147 @@
 package tracing;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-
-import org.w3c.dom.Element;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 
 
 /**
  * This tracer logs the trace into a text file.
- * @author ogeorgeon 
+ * The file is kept open and written through a buffer that is flushed at a regular interval and when the tracer is closed.
+ * A write after close() reopens the file in append mode, so the tracer can be closed on every cycle.
+ * @author ogeorgeon
  */
 public class Tracer implements ITracer<Object>
 {
+	/** Never force the file to the disk (the operating system decides). */
+	public static final int FSYNC_NEVER = 0;
+	/** Force the file to the disk when the tracer is closed. */
+	public static final int FSYNC_ON_CLOSE = 1;
+	/** Force the file to the disk on every flush. */
+	public static final int FSYNC_ON_FLUSH = 2;
+
+	/** Default interval between two flushes (in milliseconds). */
+	public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+	/** The only elements written to the text trace */
+	private static final Set<String> ELEMENTS = new HashSet<String>(Arrays.asList("cycle", "enacted_act", "interrupted"));
 
 	private  File logFile = null;
+	private FileOutputStream stream = null;
+	private Writer writer = null;
+	private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+	private int fsyncPolicy = FSYNC_ON_CLOSE;
+	private long lastFlush = 0;
 
 	/**
 	 * Initialize the tracer.
 	 * @param fileName The name of the file where to log the trace.
 	 */
 	public Tracer(String fileName)
-	{ 	
-		try 
+	{
+		this(fileName, DEFAULT_FLUSH_INTERVAL, FSYNC_ON_CLOSE);
+	}
+
+	/**
+	 * Initialize the tracer.
+	 * @param fileName The name of the file where to log the trace.
+	 * @param flushInterval The interval between two flushes in milliseconds (0 to flush after each write).
+	 * @param fsyncPolicy FSYNC_NEVER, FSYNC_ON_CLOSE or FSYNC_ON_FLUSH.
+	 */
+	public Tracer(String fileName, long flushInterval, int fsyncPolicy)
+	{
+		this.flushInterval = flushInterval;
+		this.fsyncPolicy = fsyncPolicy;
+		try
 		{
 			logFile = new File(fileName);
-			if (logFile.exists()) 
-			{
+			if (logFile.exists())
 				logFile.delete();
-				logFile.createNewFile();
-			}
+			open();
 		}
 		catch (IOException e) {
 			System.out.println("Error creating the file " + fileName);
 			e.printStackTrace();
 		}
-	} 
-	
+	}
+
+	/**
+	 * Open the file in append mode.
+	 */
+	private void open() throws IOException
+	{
+		stream = new FileOutputStream(logFile, true);
+		writer = new BufferedWriter(new OutputStreamWriter(stream));
+		lastFlush = System.nanoTime();
+	}
+
 	/**
-	 * Prints a line to the log file. 
+	 * @return True if the file is open, after reopening it if the tracer was closed.
+	 */
+	private boolean isOpen()
+	{
+		if (writer == null && logFile != null)
+		{
+			try
+			{
+				open();
+			}
+			catch (IOException e)
+			{
+				System.out.println("Error reopening the file " + logFile);
+				e.printStackTrace();
+				// Do not try again at each write.
+				logFile = null;
+			}
+		}
+		return writer != null;
+	}
+
+	/**
+	 * Prints a line to the log file.
 	 * @param line The line to print in the log file.
 	 * @return True if success, false if failure.
 	 */
-	public boolean writeLine(String line) 
+	public boolean writeLine(String line)
 	{
 		boolean r = false;
-		if (logFile != null)
+		if (isOpen())
 		{
-			try 
+			try
 			{
-				FileWriter writer = new FileWriter(logFile, true);
-				writer.write(line );
-				writer.close();
+				write(line);
 				r = true;
-			} 
-			catch (FileNotFoundException e) 
+			}
+			catch (IOException e)
 			{
 				e.printStackTrace();
 			}
-			catch (IOException e) 
+		}
+		return r;
+	}
+
+	/**
+	 * Flush the buffer to the file (and force it to the disk if the fsync policy is FSYNC_ON_FLUSH).
+	 * @return True if success, false if failure.
+	 */
+	public boolean flush()
+	{
+		boolean r = false;
+		if (writer != null)
+		{
+			try
+			{
+				flush(fsyncPolicy == FSYNC_ON_FLUSH);
+				r = true;
+			}
+			catch (IOException e)
 			{
 				e.printStackTrace();
 			}
@@ -68,70 +149,113 @@ public class Tracer implements ITracer<Object>
 		return r;
 	}
 
-	public boolean close() 
+	/**
+	 * Flush the buffer and close the file (the next write reopens it).
+	 */
+	public boolean close()
 	{
-		return true;
+		boolean r = true;
+		if (writer != null)
+		{
+			try
+			{
+				flush(fsyncPolicy != FSYNC_NEVER);
+				writer.close();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+				r = false;
+			}
+			writer = null;
+			stream = null;
+		}
+		return r;
 	}
 
-	public void startNewEvent(int t) 
+	public void startNewEvent(int t)
 	{
-		addEventElement("cycle", " " + t); 
+		addEventElement("cycle", " " + t);
 	}
-	
+
 	public void finishEvent() {}
 
-	public void addEventElement(String name, String value) 
+	public void addEventElement(String name, String value)
 	{
 		addEventElementImpl(name, value);
 	}
-	
-	public Object addEventElement(String name) 
+
+	public Object addEventElement(String name)
 	{
 		return addEventElementImpl(name, "");
 	}
-	
-	private Object addEventElementImpl(String name, String value) 
+
+	private Object addEventElementImpl(String name, String value)
 	{
-		if (name.equals("cycle") || name.equals("enacted_act") || name.equals("interrupted")) 
+		if (ELEMENTS.contains(name) && isOpen())
 		{
-			try 
+			try
 			{
-				FileWriter writer = new FileWriter(logFile, true);
-				writer.write(value );
-				writer.close();
-			} 
-			catch (FileNotFoundException e) 
-			{
-				System.out.println("Error logging the trace.");
-				e.printStackTrace();
+				write(value);
 			}
-			catch (IOException e) 
+			catch (IOException e)
 			{
 				System.out.println("Error logging the trace.");
 				e.printStackTrace();
 			}
-		}	
+		}
 		return null;
 	}
 
-	public Object addSubelement(Object element, String name) 
+	private void write(String text) throws IOException
+	{
+		writer.write(text);
+		long now = System.nanoTime();
+		if (now - lastFlush >= flushInterval * 1000000L)
+			flush(fsyncPolicy == FSYNC_ON_FLUSH);
+	}
+
+	private void flush(boolean fsync) throws IOException
+	{
+		writer.flush();
+		if (fsync)
+			stream.getFD().sync();
+		lastFlush = System.nanoTime();
+	}
+
+	public boolean accepts(String name)
+	{
+		return ELEMENTS.contains(name);
+	}
+
+	public void addEventElement(String name, ITraceValue value)
+	{
+		if (ELEMENTS.contains(name) && isOpen())
+			addEventElementImpl(name, value.getTraceValue());
+	}
+
+	public void addSubelement(Object element, String name, ITraceValue value)
+	{
+	}
+
+	public Object addSubelement(Object element, String name)
 	{
 		// TODO Auto-generated method stub
 		return null;
 	}
-	
-	public void addSubelement(Object element, String name, String textContent) 
+
+	public void addSubelement(Object element, String name, String textContent)
 	{
 		// TODO Auto-generated method stub
 	}
 
-	public Object newEvent(String source, String type, int t) 
+	public Object newEvent(String source, String type, int t)
 	{
 		// TODO Auto-generated method stub
 		return null;
 	}
 
-	public Object addEventElement(String name, boolean display) 
+	public Object addEventElement(String name, boolean display)
 	{
 		return addEventElementImpl(name, "");
 	}
@@ -9,9 +9,23 @@ import javax.xml.transform.stream.StreamResult;
 
 import org.w3c.dom.*;
 
+import utils.Log;
 
+
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -24,6 +38,9 @@ import java.text.SimpleDateFormat;
 
 /**
  * This tracer logs the trace by sending it to a remote php script.
+ * The slices are posted by a background thread so that the agent does not wait for the server.
+ * By default, each slice is posted in its own uncompressed request, which is the format the php scripts expect.
+ * Batches of several slices and compression are opt-in (see setBatching() and setCompression()).
  */
 public class XMLStreamTracer implements ITracer<Element>
 {
@@ -34,6 +51,7 @@ public class XMLStreamTracer implements ITracer<Element>
 	private Element m_currentEvent;
 	private String m_traceId;
 	private int m_id = 0;
+	private TraceFilter m_filter = TraceFilter.ALL;
 
 	private boolean m_eventStarted;
 
@@ -50,6 +68,33 @@ public class XMLStreamTracer implements ITracer<Element>
 	private String m_url;
 	
 	private String m_cookie;
+
+	/** Maximum number of attempts to post a batch before it is spilled */
+	private static final int MAX_RETRIES = 5;
+	private static final long RETRY_DELAY = 100;
+	private static final long MAX_RETRY_DELAY = 5000;
+
+	private int m_maxBatchEvents = 1;
+	private long m_maxBatchMillis = 0;
+	private boolean m_gzip = false;
+	private int m_queueCapacity = 64;
+	private File m_spillDirectory = null;
+	private boolean m_temporarySpillDirectory = false;
+
+	/** The slices of the batch being built (agent thread only) */
+	private StringBuilder m_batch = new StringBuilder();
+	private int m_batchEvents = 0;
+	private long m_batchStart = 0;
+	private long m_nextSeq = 0;
+
+	/** The batches waiting to be posted, guarded by m_lock */
+	private final Object m_lock = new Object();
+	private LinkedList<Batch> m_queue = new LinkedList<Batch>();
+	private TreeMap<Long, File> m_spills = new TreeMap<Long, File>();
+	private Thread m_sender = null;
+	private volatile boolean m_closed = false;
+	private volatile long m_nbPosts = 0;
+	private volatile long m_nbSpilled = 0;
 	
 	/**
 	 * Initialize the tracer.
@@ -92,57 +137,345 @@ public class XMLStreamTracer implements ITracer<Element>
 		m_document = m_builder.newDocument();
 	} 
 	
+	/**
+	 * Post several events in each request.
+	 * A batch is posted when it holds maxEvents events or when its first event is older than maxMillis
+	 * (the age is checked when an event is finished).
+	 * The data parameter of a batch concatenates several slice elements:
+	 * only enable batching with a collector that accepts them (the php scripts accept one slice per request).
+	 * @param maxEvents The maximum number of events in a request (1 by default).
+	 * @param maxMillis The maximum age of a batch in milliseconds (0 for no limit).
+	 */
+	public void setBatching(int maxEvents, long maxMillis)
+	{
+		m_maxBatchEvents = Math.max(1, maxEvents);
+		m_maxBatchMillis = maxMillis;
+	}
+
+	/**
+	 * @param gzip true to compress the request bodies with gzip (false by default).
+	 * Only enable compression with a collector that accepts Content-Encoding: gzip (the php scripts do not).
+	 */
+	public void setCompression(boolean gzip)
+	{
+		m_gzip = gzip;
+	}
+
+	/**
+	 * The batches are posted by a background thread.
+	 * While the server is slow or unreachable, they wait in a queue, then in files of the spill directory
+	 * when the queue is full or when a batch could not be posted after several attempts.
+	 * @param capacity The number of batches kept in memory.
+	 * @param spillDirectory The directory of the spilled batches (null for a temporary directory).
+	 */
+	public void setRetryQueue(int capacity, File spillDirectory)
+	{
+		m_queueCapacity = Math.max(1, capacity);
+		m_spillDirectory = spillDirectory;
+	}
+
+	/**
+	 * @return The number of batches successfully posted.
+	 */
+	public long getNbPosts()
+	{
+		return m_nbPosts;
+	}
+
+	/**
+	 * @return The number of batches that were spilled to the disk.
+	 */
+	public long getNbSpilled()
+	{
+		return m_nbSpilled;
+	}
+
+	/**
+	 * Add a slice to the current batch, and queue the batch for posting when it is full.
+	 * @param obselData The serialized slice.
+	 */
 	protected void post_obsel(String obselData)
 	{
-		try
+		if (m_batch.length() == 0)
+			m_batchStart = System.currentTimeMillis();
+		m_batch.append(obselData);
+		m_batchEvents++;
+		if (m_batchEvents >= m_maxBatchEvents
+				|| (m_maxBatchMillis > 0 && System.currentTimeMillis() - m_batchStart >= m_maxBatchMillis))
+			queueBatch();
+	}
+
+	private void queueBatch()
+	{
+		if (m_batchEvents == 0)
+			return;
+		Batch batch = new Batch(m_nextSeq++, m_batchEvents, m_batch.toString());
+		m_batch.setLength(0);
+		m_batchEvents = 0;
+
+		boolean full;
+		synchronized (m_lock)
 		{
-			URL base = new URL(m_url + "streamTrace.php");
-			HttpURLConnection baseCon = (HttpURLConnection) base.openConnection();
-			baseCon.setRequestMethod("POST");
+			if (m_sender == null)
+			{
+				m_sender = new Thread(new Runnable(){
+					public void run() {
+						send();
+					}
+				}, "XMLStreamTracer");
+				m_sender.setDaemon(true);
+				m_sender.start();
+			}
+			full = m_queue.size() >= m_queueCapacity;
+			if (!full)
+			{
+				m_queue.addLast(batch);
+				m_lock.notifyAll();
+			}
+		}
+		// The batches are posted in order of sequence number, from the queue or from the disk.
+		if (full)
+			spill(batch);
+	}
 
-			String data = URLEncoder.encode("traceId", "UTF-8") + "="
-					+ URLEncoder.encode(m_traceId, "UTF-8");
-			data += "&" + URLEncoder.encode("streamcookie", "UTF-8") + "="
-					+ URLEncoder.encode(m_cookie, "UTF-8");
-			data += "&" + URLEncoder.encode("data", "UTF-8") + "="
-					+ URLEncoder.encode(obselData, "UTF-8");
+	/**
+	 * Post the queued and spilled batches in order until the tracer is closed.
+	 * A batch that cannot be posted after MAX_RETRIES is spilled with the queued batches.
+	 * While the tracer is open, the sender tries the spilled batches again after MAX_RETRY_DELAY.
+	 * Once the tracer is closed, the first batch that cannot be posted stops the sender,
+	 * and this batch and the next ones are left in the spill directory.
+	 */
+	private void send()
+	{
+		while (true)
+		{
+			Batch batch = null;
+			long seq = 0;
+			File file = null;
+			synchronized (m_lock)
+			{
+				while (m_queue.isEmpty() && m_spills.isEmpty() && !m_closed)
+				{
+					try
+					{
+						m_lock.wait();
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+				}
+				if (m_queue.isEmpty() && m_spills.isEmpty())
+					break;
+				// The batch with the lowest sequence number, from the queue or from the disk
+				if (!m_queue.isEmpty() && (m_spills.isEmpty() || m_queue.getFirst().seq < m_spills.firstKey()))
+					batch = m_queue.removeFirst();
+				else
+				{
+					seq = m_spills.firstKey();
+					file = m_spills.remove(seq);
+				}
+			}
+			if (file != null)
+				batch = readSpill(seq, file);
+			if (batch == null || deliver(batch))
+				continue;
 
-			//System.err.println(data);
-			
-			baseCon.setDoOutput(true);
-			baseCon.setDoInput(true);
-			baseCon.setUseCaches (false);
-			
-			OutputStream os = baseCon.getOutputStream();
-			os.write(data.getBytes());
-			os.flush();
-			os.close();
-			
-			int response = baseCon.getResponseCode();
-			if(response >= 300 || response < 200)
+			List<Batch> queued;
+			synchronized (m_lock)
 			{
-				System.err.println("Post failed: \"\"\"");
-				InputStream es = baseCon.getErrorStream();
-				for(int ch = es.read(); ch != -1; ch = es.read())
+				queued = new ArrayList<Batch>(m_queue);
+				m_queue.clear();
+			}
+			spill(batch);
+			for (Batch b : queued)
+				spill(b);
+			if (m_closed || Thread.currentThread().isInterrupted())
+			{
+				System.err.println("Couldn't reach the server (" + m_url + "), the trace is kept in " + m_spillDirectory + ".");
+				return;
+			}
+			synchronized (m_lock)
+			{
+				try
 				{
-					System.err.print((char)ch);
+					if (!m_closed)
+						m_lock.wait(MAX_RETRY_DELAY);
+				}
+				catch (InterruptedException e)
+				{
+					return;
 				}
-				System.err.println("\"\"\"");
-			}else{
-				System.err.println("Done.");
 			}
-		} catch (MalformedURLException e) {
+		}
+	}
+
+	/**
+	 * Read and delete a spilled batch.
+	 * @return The batch, or null if it could not be read.
+	 */
+	private Batch readSpill(long seq, File file)
+	{
+		Batch batch = null;
+		try
+		{
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try
+			{
+				int nbEvents = in.readInt();
+				byte[] data = new byte[in.readInt()];
+				in.readFully(data);
+				batch = new Batch(seq, nbEvents, new String(data, "UTF-8"));
+			}
+			finally
+			{
+				in.close();
+			}
+			file.delete();
+		}
+		catch (IOException e)
+		{
+			System.err.println("Couldn't read the spilled trace (" + file + ").");
 			e.printStackTrace();
-			System.err.println("Invalid URL (" + m_url + ").");
-			System.exit(0);
-		} catch (IOException e) {
+		}
+		return batch;
+	}
+
+	/**
+	 * Write a batch to the spill directory (the file is written without holding the lock).
+	 */
+	private void spill(Batch batch)
+	{
+		File directory = null;
+		try
+		{
+			synchronized (m_lock)
+			{
+				if (m_spillDirectory == null)
+				{
+					m_spillDirectory = File.createTempFile("ernest-trace", "");
+					m_spillDirectory.delete();
+					m_temporarySpillDirectory = true;
+				}
+				directory = m_spillDirectory;
+			}
+			directory.mkdirs();
+			File file = new File(directory, m_traceId.replaceAll("\\W", "_") + "-" + batch.seq + ".batch");
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			try
+			{
+				byte[] data = batch.data.getBytes("UTF-8");
+				out.writeInt(batch.nbEvents);
+				out.writeInt(data.length);
+				out.write(data);
+			}
+			finally
+			{
+				out.close();
+			}
+			synchronized (m_lock)
+			{
+				m_spills.put(batch.seq, file);
+				m_nbSpilled++;
+				m_lock.notifyAll();
+			}
+		}
+		catch (IOException e)
+		{
+			System.err.println("Couldn't spill the trace to " + directory + ", " + batch.nbEvents + " events lost.");
 			e.printStackTrace();
-			System.err.println("Couldn't reach the server (" + m_url + ").");
-			System.exit(0);
-		};
+		}
+	}
+
+	/**
+	 * Post a batch, retrying with an increasing delay while the server is unreachable or failing.
+	 * @return false if the batch could not be posted after MAX_RETRIES, or if the sender was interrupted.
+	 */
+	private boolean deliver(Batch batch)
+	{
+		long delay = RETRY_DELAY;
+		for (int attempt = 1; ; attempt++)
+		{
+			try
+			{
+				post_batch(batch);
+				return true;
+			}
+			catch (IOException e)
+			{
+				if (attempt >= MAX_RETRIES)
+					return false;
+				Log.debug("Post failed, retrying: ", e);
+			}
+			try
+			{
+				Thread.sleep(delay);
+			}
+			catch (InterruptedException ie)
+			{
+				Thread.currentThread().interrupt();
+				return false;
+			}
+			delay = Math.min(delay * 2, MAX_RETRY_DELAY);
+		}
+	}
+
+	/**
+	 * Post the slices of a batch in one request.
+	 * @throws IOException if the server could not be reached or answered with a server error.
+	 */
+	protected void post_batch(Batch batch) throws IOException
+	{
+		URL base = new URL(m_url + "streamTrace.php");
+		HttpURLConnection baseCon = (HttpURLConnection) base.openConnection();
+		baseCon.setRequestMethod("POST");
+
+		String data = URLEncoder.encode("traceId", "UTF-8") + "="
+				+ URLEncoder.encode(m_traceId, "UTF-8");
+		data += "&" + URLEncoder.encode("streamcookie", "UTF-8") + "="
+				+ URLEncoder.encode(m_cookie, "UTF-8");
+		data += "&" + URLEncoder.encode("data", "UTF-8") + "="
+				+ URLEncoder.encode(batch.data, "UTF-8");
+
+		baseCon.setDoOutput(true);
+		baseCon.setDoInput(true);
+		baseCon.setUseCaches (false);
+		if (m_gzip)
+			baseCon.setRequestProperty("Content-Encoding", "gzip");
+
+		OutputStream os = baseCon.getOutputStream();
+		if (m_gzip)
+			os = new GZIPOutputStream(os);
+		os.write(data.getBytes());
+		os.flush();
+		os.close();
+
+		int response = baseCon.getResponseCode();
+		if (response >= 500)
+			throw new IOException("Server error " + response);
+		if(response >= 300 || response < 200)
+		{
+			System.err.println("Post failed: \"\"\"");
+			InputStream es = baseCon.getErrorStream();
+			if (es != null)
+				for(int ch = es.read(); ch != -1; ch = es.read())
+				{
+					System.err.print((char)ch);
+				}
+			System.err.println("\"\"\"");
+		}
+		else
+		{
+			baseCon.getInputStream().close();
+			m_nbPosts++;
+		}
 	}
 
-	protected void post_new_trace()
+	/**
+	 * Ask the server for a new trace.
+	 * @return false if the server could not be reached (the trace keeps its default id).
+	 */
+	protected boolean post_new_trace()
 	{
 		try
 		{
@@ -171,10 +504,11 @@ public class XMLStreamTracer implements ITracer<Element>
 			{
 				System.err.println("Post failed: \"\"\"");
 				InputStream es = baseCon.getErrorStream();
-				for(int ch = es.read(); ch != -1; ch = es.read())
-				{
-					System.err.print((char)ch);
-				}
+				if (es != null)
+					for(int ch = es.read(); ch != -1; ch = es.read())
+					{
+						System.err.print((char)ch);
+					}
 				System.err.println("\"\"\"");
 			}else{
 				InputStream is = baseCon.getInputStream();
@@ -183,18 +517,20 @@ public class XMLStreamTracer implements ITracer<Element>
 				m_traceId = new String(Arrays.copyOf(b, len));
 				System.err.println("Done.");
 			}
+			return true;
 		} catch (MalformedURLException e) {
-			e.printStackTrace();
-			System.err.println("Invalid URL (" + m_url + ").");
-			System.exit(0);
+			Log.error("Invalid URL (" + m_url + "): " + e);
 		} catch (IOException e) {
-			e.printStackTrace();
-			System.err.println("Couldn't reach the server (" + m_url + ").");
-			System.exit(0);
-		};
+			Log.error("Couldn't reach the server (" + m_url + "): " + e);
+		}
+		return false;
 	}
 	
-	protected void post_end_of_trace()
+	/**
+	 * Tell the server that the trace is over.
+	 * @return false if the server could not be reached.
+	 */
+	protected boolean post_end_of_trace()
 	{
 		try
 		{
@@ -223,33 +559,56 @@ public class XMLStreamTracer implements ITracer<Element>
 			{
 				System.err.println("Post failed: \"\"\"");
 				InputStream es = baseCon.getErrorStream();
-				for(int ch = es.read(); ch != -1; ch = es.read())
-				{
-					System.err.print((char)ch);
-				}
+				if (es != null)
+					for(int ch = es.read(); ch != -1; ch = es.read())
+					{
+						System.err.print((char)ch);
+					}
 				System.err.println("\"\"\"");
 			}else{
 				System.err.println("Done.");
 			}
+			return true;
 		} catch (MalformedURLException e) {
-			e.printStackTrace();
-			System.err.println("Invalid URL (" + m_url + ").");
-			System.exit(0);
+			Log.error("Invalid URL (" + m_url + "): " + e);
 		} catch (IOException e) {
-			e.printStackTrace();
-			System.err.println("Couldn't reach the server (" + m_url + ").");
-			System.exit(0);
-		};
+			Log.error("Couldn't reach the server (" + m_url + "): " + e);
+		}
+		return false;
 	}
 	
 	/**
-	 * Write the XML document to the file trace.xml
-	 * from http://java.developpez.com/faq/xml/?page=xslt#creerXmlDom
+	 * Post the remaining events and the end of the trace.
+	 * @return false if some events could not be posted and were left in the spill directory,
+	 * or if the end of the trace could not be posted.
 	 */
 	public boolean close() 
 	{
-		this.post_end_of_trace();
-		return true;
+		if (m_eventStarted)
+			this.finishEvent();
+		queueBatch();
+		Thread sender;
+		synchronized (m_lock)
+		{
+			m_closed = true;
+			m_lock.notifyAll();
+			sender = m_sender;
+		}
+		if (sender != null)
+		{
+			try
+			{
+				sender.join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+		boolean ended = this.post_end_of_trace();
+		if (m_temporarySpillDirectory && m_spills.isEmpty())
+			m_spillDirectory.delete();
+		return m_spills.isEmpty() && ended;
 	}
 
 	/**
@@ -337,7 +696,7 @@ public class XMLStreamTracer implements ITracer<Element>
 	
 	private Element addEventElementImpl(String name, String textContent, boolean display)
 	{
-		if (m_currentEvent != null)
+		if (m_currentEvent != null && m_filter.accepts(name))
 		{
 			Element element = m_document.createElement(name);
 			element.setTextContent(textContent);
@@ -361,7 +720,7 @@ public class XMLStreamTracer implements ITracer<Element>
 	
 	private Element addSubelementImpl(Element element, String name, String textContent)
 	{
-		if (element != null)
+		if (element != null && m_filter.accepts(name))
 		{
 			Element subElement = m_document.createElement(name);
 			subElement.setTextContent(textContent);
@@ -375,4 +734,46 @@ public class XMLStreamTracer implements ITracer<Element>
 	{
 		return this.addEventElementImpl(name, "", display);
 	}
+
+	/**
+	 * @param filter The names of the elements kept in the trace.
+	 */
+	public void setFilter(TraceFilter filter)
+	{
+		m_filter = filter;
+	}
+
+	public boolean accepts(String name)
+	{
+		return m_filter.accepts(name);
+	}
+
+	public void addEventElement(String name, ITraceValue value)
+	{
+		if (m_filter.accepts(name))
+			this.addEventElement(name, value.getTraceValue());
+	}
+
+	public void addSubelement(Element element, String name, ITraceValue value)
+	{
+		if (element != null && m_filter.accepts(name))
+			this.addSubelement(element, name, value.getTraceValue());
+	}
+
+	/**
+	 * Serialized slices posted in one request.
+	 */
+	protected static class Batch
+	{
+		final long seq;
+		final int nbEvents;
+		final String data;
+
+		Batch(long seq, int nbEvents, String data)
+		{
+			this.seq = seq;
+			this.nbEvents = nbEvents;
+			this.data = data;
+		}
+	}
 }
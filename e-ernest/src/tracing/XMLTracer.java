@@ -28,6 +28,7 @@ public class XMLTracer implements ITracer<Element>
 	private Element m_currentEvent;
 	private String m_fileName;
 	private int m_id = 0;
+	private TraceFilter m_filter = TraceFilter.ALL;
 	
 	/**
 	 * Initialize the tracer.
@@ -156,7 +157,7 @@ public class XMLTracer implements ITracer<Element>
 	
 	private Element addEventElementImpl(String name, String textContent)
 	{
-		if (m_currentEvent != null)
+		if (m_currentEvent != null && m_filter.accepts(name))
 		{
 			Element element = m_document.createElement(name);
 			element.setTextContent(textContent);
@@ -179,7 +180,7 @@ public class XMLTracer implements ITracer<Element>
 	
 	private Element addSubelementImpl(Element element, String name, String textContent)
 	{
-		if (element != null)
+		if (element != null && m_filter.accepts(name))
 		{
 			Element subElement = m_document.createElement(name);
 			subElement.setTextContent(textContent);
@@ -193,4 +194,29 @@ public class XMLTracer implements ITracer<Element>
 	{
 		return this.addEventElementImpl(name, "");
 	}
+
+	/**
+	 * @param filter The names of the elements kept in the trace.
+	 */
+	public void setFilter(TraceFilter filter)
+	{
+		m_filter = filter;
+	}
+
+	public boolean accepts(String name)
+	{
+		return m_filter.accepts(name);
+	}
+
+	public void addEventElement(String name, ITraceValue value)
+	{
+		if (m_filter.accepts(name))
+			this.addEventElement(name, value.getTraceValue());
+	}
+
+	public void addSubelement(Element element, String name, ITraceValue value)
+	{
+		if (element != null && m_filter.accepts(name))
+			this.addSubelement(element, name, value.getTraceValue());
+	}
 }
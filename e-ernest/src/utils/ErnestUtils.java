@@ -2,10 +2,9 @@ package utils;
 
 import javax.media.j3d.Transform3D;
 import javax.vecmath.Matrix3d;
-import javax.vecmath.Matrix3f;
-import javax.vecmath.Vector3d;
 import javax.vecmath.Vector3f;
 import javax.vecmath.Point3f;
+import eca.spas.Transform2D;
 
 /**
  * Miscellaneous utilities for Ernest.
@@ -41,6 +40,33 @@ public final class ErnestUtils
 			return (float)Math.atan2(mat.m10, mat.m00);
 	}
 	
+	/**
+	 * Convert a transformation received from the environment.
+	 * Only the rotation around the z axis and the horizontal translation are kept.
+	 * @param transform The transformation.
+	 * @return The 2D transformation.
+	 */
+	public static Transform2D toTransform2D(Transform3D transform) 
+	{
+		double[] m = new double[16];
+		transform.get(m);
+		return new Transform2D(m[0], m[4], m[3], m[7]);
+	}
+	
+	/**
+	 * Convert a transformation to send it to the environment.
+	 * @param transform The 2D transformation.
+	 * @return The transformation.
+	 */
+	public static Transform3D toTransform3D(Transform2D transform) 
+	{
+		return new Transform3D(new double[] {
+				transform.getCos(), -transform.getSin(), 0, transform.getX(),
+				transform.getSin(),  transform.getCos(), 0, transform.getY(),
+				0, 0, 1, 0,
+				0, 0, 0, 1});
+	}
+	
 	/**
 	 * Returns the polar angle of this vector.
 	 * @param point A vector.
@@ -65,14 +91,10 @@ public final class ErnestUtils
 	 */
 	public static void rotate(Vector3f vector, float angle) 
 	{
-		//Matrix3f rot = new Matrix3f();
-		//rot.rotZ(angle);		
-		//rot.transform(vector);
-		
-		Transform3D tf = new Transform3D();
-		tf.rotZ(angle);
-		tf.transform(vector);
-		
+		double cos = Math.cos(angle), sin = Math.sin(angle);
+		float vx = vector.x;
+		vector.x = (float)(cos * vx - sin * vector.y);
+		vector.y = (float)(sin * vx + cos * vector.y);
 	}	
 
 	
@@ -0,0 +1,189 @@
+package utils;
+
+import java.io.PrintStream;
+
+/**
+ * A leveled console log for the agent and its environments.
+ * A message is printed only if its level is enabled.
+ * The overloads that take message parts only concatenate them when the level is enabled,
+ * so that a disabled call costs a comparison and no string building.
+ * Call sites that build more complex messages should first check isEnabled().
+ * The level is read from the system property "ernest.log" (ERROR, WARN, INFO, DEBUG or TRACE), INFO by default.
+ * @author Olivier
+ */
+public final class Log
+{
+	/** Errors */
+	public static final int ERROR = 0;
+	/** Warnings */
+	public static final int WARN = 1;
+	/** Information about the run (e.g. progress) */
+	public static final int INFO = 2;
+	/** Details of each cycle */
+	public static final int DEBUG = 3;
+	/** Details within a cycle (e.g. every learned act) */
+	public static final int TRACE = 4;
+
+	private static final String[] LEVEL_NAMES = {"ERROR", "WARN", "INFO", "DEBUG", "TRACE"};
+
+	private static volatile int level = parseLevel(System.getProperty("ernest.log"), INFO);
+	private static volatile PrintStream out = System.out;
+
+	/**
+	 * This is a utility class (static methods only), don't instantiate.
+	 */
+	private Log()
+	{
+	}
+
+	/**
+	 * @param newLevel The highest level that is printed.
+	 */
+	public static void setLevel(int newLevel)
+	{
+		level = newLevel;
+	}
+
+	/**
+	 * @return The highest level that is printed.
+	 */
+	public static int getLevel()
+	{
+		return level;
+	}
+
+	/**
+	 * @param stream The stream to which messages are printed.
+	 */
+	public static void setOutput(PrintStream stream)
+	{
+		out = stream;
+	}
+
+	/**
+	 * @param messageLevel The level.
+	 * @return true if messages of this level are printed.
+	 */
+	public static boolean isEnabled(int messageLevel)
+	{
+		return messageLevel <= level;
+	}
+
+	/**
+	 * @param messageLevel The level.
+	 * @param message The message.
+	 */
+	public static void log(int messageLevel, String message)
+	{
+		if (messageLevel <= level)
+			out.println(message);
+	}
+
+	/**
+	 * @param messageLevel The level.
+	 * @param message The beginning of the message.
+	 * @param arg The object whose string representation ends the message.
+	 */
+	public static void log(int messageLevel, String message, Object arg)
+	{
+		if (messageLevel <= level)
+			out.println(message + arg);
+	}
+
+	/**
+	 * @param messageLevel The level.
+	 * @param message The beginning of the message.
+	 * @param arg1 The first object appended to the message.
+	 * @param separator The text between the two objects.
+	 * @param arg2 The second object appended to the message.
+	 */
+	public static void log(int messageLevel, String message, Object arg1, String separator, Object arg2)
+	{
+		if (messageLevel <= level)
+			out.println(message + arg1 + separator + arg2);
+	}
+
+	/**
+	 * Print a message at the ERROR level.
+	 * @param message The message.
+	 */
+	public static void error(String message)
+	{
+		log(ERROR, message);
+	}
+
+	/**
+	 * Print a message at the WARN level.
+	 * @param message The message.
+	 */
+	public static void warn(String message)
+	{
+		log(WARN, message);
+	}
+
+	/**
+	 * Print a message at the INFO level.
+	 * @param message The message.
+	 */
+	public static void info(String message)
+	{
+		log(INFO, message);
+	}
+
+	/**
+	 * Print a message followed by an object at the INFO level.
+	 * @param message The beginning of the message.
+	 * @param arg The object whose string representation ends the message.
+	 */
+	public static void info(String message, Object arg)
+	{
+		log(INFO, message, arg);
+	}
+
+	/**
+	 * Print a message at the DEBUG level.
+	 * @param message The message.
+	 */
+	public static void debug(String message)
+	{
+		log(DEBUG, message);
+	}
+
+	/**
+	 * Print a message followed by an object at the DEBUG level.
+	 * @param message The beginning of the message.
+	 * @param arg The object whose string representation ends the message.
+	 */
+	public static void debug(String message, Object arg)
+	{
+		log(DEBUG, message, arg);
+	}
+
+	/**
+	 * Print a message at the TRACE level.
+	 * @param message The message.
+	 */
+	public static void trace(String message)
+	{
+		log(TRACE, message);
+	}
+
+	/**
+	 * Print a message followed by an object at the TRACE level.
+	 * @param message The beginning of the message.
+	 * @param arg The object whose string representation ends the message.
+	 */
+	public static void trace(String message, Object arg)
+	{
+		log(TRACE, message, arg);
+	}
+
+	private static int parseLevel(String name, int defaultLevel)
+	{
+		if (name != null)
+			for (int i = 0; i < LEVEL_NAMES.length; i++)
+				if (LEVEL_NAMES[i].equalsIgnoreCase(name.trim()))
+					return i;
+		return defaultLevel;
+	}
+}
@@ -0,0 +1,178 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from primitive long keys to non-negative int values.
+ * Lookups and insertions do not allocate (except when the table grows).
+ * Used to index objects by the composite key of two integer identifiers.
+ * @author Olivier
+ */
+public final class LongIntMap
+{
+	/** The value returned when a key is absent. */
+	public static final int NO_VALUE = -1;
+
+	private static final int DEFAULT_CAPACITY = 64;
+
+	private long[] keys;
+	private int[] values;
+	private int mask;
+	private int size = 0;
+
+	/**
+	 * Create an empty map.
+	 */
+	public LongIntMap()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create an empty map.
+	 * @param expectedSize The number of entries expected in this map.
+	 */
+	public LongIntMap(int expectedSize)
+	{
+		int capacity = Integer.highestOneBit(Math.max(expectedSize * 2 - 1, DEFAULT_CAPACITY - 1)) << 1;
+		allocate(capacity);
+	}
+
+	/**
+	 * Combine two integer identifiers into a single key.
+	 * @param high The first identifier.
+	 * @param low The second identifier.
+	 * @return The key.
+	 */
+	public static long key(int high, int low)
+	{
+		return ((long)high << 32) | (low & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @param key The key.
+	 * @return The value associated with this key, or NO_VALUE if none.
+	 */
+	public int get(long key)
+	{
+		int i = slot(key);
+		while (values[i] != NO_VALUE)
+		{
+			if (keys[i] == key)
+				return values[i];
+			i = (i + 1) & mask;
+		}
+		return NO_VALUE;
+	}
+
+	/**
+	 * @param key The key.
+	 * @return true if this map contains this key.
+	 */
+	public boolean containsKey(long key)
+	{
+		return get(key) != NO_VALUE;
+	}
+
+	/**
+	 * Associate a value with a key, replacing any previous value.
+	 * @param key The key.
+	 * @param value The value (must be non-negative).
+	 */
+	public void put(long key, int value)
+	{
+		if (value < 0)
+			throw new IllegalArgumentException("Negative value " + value);
+		int i = slot(key);
+		while (values[i] != NO_VALUE)
+		{
+			if (keys[i] == key)
+			{
+				values[i] = value;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		size++;
+		if (size * 2 > keys.length)
+			rehash(keys.length * 2);
+	}
+
+	/**
+	 * Remove the entry associated with a key.
+	 * @param key The key.
+	 * @return The removed value, or NO_VALUE if the key was absent.
+	 */
+	public int remove(long key)
+	{
+		int i = slot(key);
+		while (values[i] != NO_VALUE)
+		{
+			if (keys[i] == key)
+			{
+				int removed = values[i];
+				values[i] = NO_VALUE;
+				size--;
+				// Re-insert the following entries of the cluster so that probing stays consistent.
+				int j = (i + 1) & mask;
+				while (values[j] != NO_VALUE)
+				{
+					long k = keys[j];
+					int v = values[j];
+					values[j] = NO_VALUE;
+					size--;
+					put(k, v);
+					j = (j + 1) & mask;
+				}
+				return removed;
+			}
+			i = (i + 1) & mask;
+		}
+		return NO_VALUE;
+	}
+
+	/**
+	 * @return The number of entries in this map.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Remove all the entries.
+	 */
+	public void clear()
+	{
+		Arrays.fill(values, NO_VALUE);
+		size = 0;
+	}
+
+	private int slot(long key)
+	{
+		// Mix the bits so that keys made of small identifiers spread over the table.
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & mask;
+	}
+
+	private void allocate(int capacity)
+	{
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, NO_VALUE);
+		mask = capacity - 1;
+	}
+
+	private void rehash(int capacity)
+	{
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++)
+			if (oldValues[i] != NO_VALUE)
+				put(oldKeys[i], oldValues[i]);
+	}
+}